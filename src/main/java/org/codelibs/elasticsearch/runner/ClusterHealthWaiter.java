@@ -0,0 +1,421 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthRequestBuilder;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.client.internal.Client;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.ClusterStateObserver;
+import org.elasticsearch.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.cluster.health.ClusterStateHealth;
+import org.elasticsearch.cluster.metadata.IndexAbstraction;
+import org.elasticsearch.cluster.metadata.IndexMetadata;
+import org.elasticsearch.cluster.metadata.Metadata;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.routing.UnassignedInfo;
+import org.elasticsearch.cluster.routing.allocation.decider.MaxRetryAllocationDecider;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.Priority;
+import org.elasticsearch.common.regex.Regex;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.index.Index;
+
+/**
+ * ClusterHealthWaiter waits for a cluster health condition by observing cluster state
+ * changes on a node, instead of polling with blocking health requests.
+ * It records shard counts over time and stops early when unassigned shards can never be allocated.
+ * Once the condition holds on the node, it is confirmed by a health request to the elected master,
+ * which also waits for pending cluster state tasks like the health request used to.
+ */
+public class ClusterHealthWaiter {
+
+    private static final Logger logger = LogManager.getLogger(ClusterHealthWaiter.class);
+
+    private static final int MAX_UNASSIGNED_SHARDS_IN_DIAGNOSTIC = 10;
+
+    private static final int MAX_PROGRESS_IN_DIAGNOSTIC = 10;
+
+    private final ClusterService clusterService;
+
+    private final Client client;
+
+    private final int expectedNodes;
+
+    /**
+     * @param clusterService a cluster service of a running node
+     * @param client a client of the node
+     * @param expectedNodes the number of running nodes in a runner
+     */
+    public ClusterHealthWaiter(final ClusterService clusterService, final Client client, final int expectedNodes) {
+        this.clusterService = clusterService;
+        this.client = client;
+        this.expectedNodes = expectedNodes;
+    }
+
+    /**
+     * Wait for a health condition.
+     *
+     * @param status a required status, or null to check relocations only
+     * @param noRelocatingShards true if relocating shards must not exist
+     * @param timeout timeout
+     * @param indices target indices, or empty for all indices
+     * @return wait result
+     */
+    public Result await(final ClusterHealthStatus status, final boolean noRelocatingShards, final TimeValue timeout,
+            final String... indices) {
+        final long startTime = System.nanoTime();
+        final List<Progress> progressList = new ArrayList<>();
+        final ClusterStateObserver observer =
+                new ClusterStateObserver(clusterService, timeout, logger, clusterService.threadPool().getThreadContext());
+        ClusterState state = observer.setAndGetObservedState();
+        while (true) {
+            final String[] concreteIndices = resolveIndices(state, indices);
+            final List<String> missingIndices = findMissingIndices(state, indices);
+            final ClusterStateHealth health = new ClusterStateHealth(state, concreteIndices);
+            record(progressList, startTime, health);
+
+            final boolean hasMaster = state.nodes().getMasterNodeId() != null;
+            if (hasMaster && missingIndices.isEmpty() && (status == null || health.getStatus().value() <= status.value())
+                    && (!noRelocatingShards || health.getRelocatingShards() == 0)) {
+                return confirmOnMaster(status, noRelocatingShards, timeout, startTime, progressList, indices);
+            }
+
+            if (hasMaster) {
+                final String failure = findUnrecoverableFailure(state, status, concreteIndices);
+                if (failure != null) {
+                    return new Result(health.getStatus(), false, buildDiagnostic(failure, state, health, progressList), progressList);
+                }
+            }
+
+            final CompletableFuture<ClusterState> future = new CompletableFuture<>();
+            observer.waitForNextChange(new ClusterStateObserver.Listener() {
+                @Override
+                public void onNewClusterState(final ClusterState newState) {
+                    future.complete(newState);
+                }
+
+                @Override
+                public void onClusterServiceClose() {
+                    future.completeExceptionally(new ClusterRunnerException("Cluster service is closed."));
+                }
+
+                @Override
+                public void onTimeout(final TimeValue timeout) {
+                    future.complete(null);
+                }
+            });
+            final ClusterState newState;
+            try {
+                newState = future.get(timeout.millis() + TimeUnit.SECONDS.toMillis(10), TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ClusterRunnerException("Interrupted while waiting for cluster health.", e);
+            } catch (final ExecutionException e) {
+                throw new ClusterRunnerException("Failed to wait for cluster health.", e.getCause());
+            } catch (final TimeoutException e) {
+                throw new ClusterRunnerException("Cluster state observer did not respond.", e);
+            }
+            if (newState == null) {
+                final ClusterState lastState = clusterService.state();
+                final ClusterStateHealth lastHealth = new ClusterStateHealth(lastState, resolveIndices(lastState, indices));
+                record(progressList, startTime, lastHealth);
+                final List<String> lastMissingIndices = findMissingIndices(lastState, indices);
+                if (!lastMissingIndices.isEmpty()) {
+                    // a health request reports red for a missing index
+                    return new Result(ClusterHealthStatus.RED, true, buildDiagnostic(
+                            "timed out after " + timeout + ", missing indices " + lastMissingIndices, lastState, lastHealth, progressList),
+                            progressList);
+                }
+                return new Result(lastHealth.getStatus(), true,
+                        buildDiagnostic("timed out after " + timeout, lastState, lastHealth, progressList), progressList);
+            }
+            state = newState;
+        }
+    }
+
+    /**
+     * Confirm the condition with a health request to the elected master, which sees the latest state
+     * and waits for pending cluster state tasks.
+     */
+    protected Result confirmOnMaster(final ClusterHealthStatus status, final boolean noRelocatingShards, final TimeValue timeout,
+            final long startTime, final List<Progress> progressList, final String... indices) {
+        final long remainingMillis = Math.max(timeout.millis() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), 1000);
+        final ClusterHealthRequestBuilder builder = client.admin().cluster().prepareHealth(indices)
+                .setTimeout(TimeValue.timeValueMillis(remainingMillis)).setWaitForNoRelocatingShards(noRelocatingShards);
+        if (status != null) {
+            builder.setWaitForStatus(status).setWaitForEvents(Priority.LANGUID);
+        }
+        final ClusterHealthResponse response = builder.execute().actionGet();
+        if (response.isTimedOut()) {
+            final ClusterState state = clusterService.state();
+            final ClusterStateHealth health = new ClusterStateHealth(state, resolveIndices(state, indices));
+            return new Result(response.getStatus(), true,
+                    buildDiagnostic("elected master reported " + response.getStatus() + " after " + timeout, state, health, progressList),
+                    progressList);
+        }
+        return new Result(response.getStatus(), false, null, progressList);
+    }
+
+    /**
+     * @param state cluster state
+     * @param indices target indices
+     * @return index names, aliases or data streams which are not wildcards and do not exist
+     */
+    protected List<String> findMissingIndices(final ClusterState state, final String[] indices) {
+        if (indices == null || indices.length == 0) {
+            return Collections.emptyList();
+        }
+        final List<String> missingIndices = new ArrayList<>();
+        for (final String expression : indices) {
+            if (!Metadata.ALL.equals(expression) && !Regex.isSimpleMatchPattern(expression)
+                    && !state.metadata().getIndicesLookup().containsKey(expression)) {
+                missingIndices.add(expression);
+            }
+        }
+        return missingIndices;
+    }
+
+    protected String[] resolveIndices(final ClusterState state, final String[] indices) {
+        if (indices == null || indices.length == 0) {
+            return state.metadata().getConcreteAllIndices();
+        }
+        final Set<String> names = new LinkedHashSet<>();
+        for (final String expression : indices) {
+            if (Metadata.ALL.equals(expression)) {
+                names.addAll(Arrays.asList(state.metadata().getConcreteAllIndices()));
+            } else if (Regex.isSimpleMatchPattern(expression)) {
+                for (final IndexMetadata indexMetadata : state.metadata().indices().values()) {
+                    if (Regex.simpleMatch(expression, indexMetadata.getIndex().getName())) {
+                        names.add(indexMetadata.getIndex().getName());
+                    }
+                }
+            } else {
+                final IndexAbstraction indexAbstraction = state.metadata().getIndicesLookup().get(expression);
+                if (indexAbstraction != null) {
+                    for (final Index index : indexAbstraction.getIndices()) {
+                        names.add(index.getName());
+                    }
+                }
+            }
+        }
+        return names.toArray(new String[names.size()]);
+    }
+
+    /**
+     * Find a reason why the condition can never be satisfied.
+     *
+     * @param state cluster state
+     * @param status a required status
+     * @param concreteIndices target indices
+     * @return null if the condition may be satisfied later
+     */
+    protected String findUnrecoverableFailure(final ClusterState state, final ClusterHealthStatus status, final String[] concreteIndices) {
+        final Set<String> indexSet = Set.of(concreteIndices);
+        for (final ShardRouting shardRouting : state.getRoutingNodes().unassigned()) {
+            if (!indexSet.contains(shardRouting.getIndexName())) {
+                continue;
+            }
+            final IndexMetadata indexMetadata = state.metadata().index(shardRouting.index());
+            final UnassignedInfo unassignedInfo = shardRouting.unassignedInfo();
+            if (indexMetadata != null && unassignedInfo != null
+                    && unassignedInfo.getNumFailedAllocations() >= MaxRetryAllocationDecider.SETTING_ALLOCATION_MAX_RETRY
+                            .get(indexMetadata.getSettings())) {
+                return shardRouting.shardId() + " failed allocation " + unassignedInfo.getNumFailedAllocations() + " times: "
+                        + unassignedInfo.getDetails();
+            }
+        }
+        if (status == ClusterHealthStatus.GREEN && state.nodes().getSize() >= expectedNodes) {
+            final int numOfDataNodes = state.nodes().getDataNodes().size();
+            for (final String index : concreteIndices) {
+                final IndexMetadata indexMetadata = state.metadata().index(index);
+                if (indexMetadata != null && indexMetadata.getSettings().get(IndexMetadata.SETTING_AUTO_EXPAND_REPLICAS) == null
+                        && indexMetadata.getNumberOfReplicas() >= numOfDataNodes) {
+                    return index + " has " + indexMetadata.getNumberOfReplicas() + " replicas, but only " + numOfDataNodes
+                            + " data nodes exist";
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void record(final List<Progress> progressList, final long startTime, final ClusterStateHealth health) {
+        final Progress progress = new Progress(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), health.getStatus(),
+                health.getUnassignedShards(), health.getInitializingShards(), health.getRelocatingShards());
+        if (progressList.isEmpty() || !progressList.get(progressList.size() - 1).sameShardCounts(progress)) {
+            progressList.add(progress);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Cluster health: {}", progress);
+            }
+        }
+    }
+
+    protected String buildDiagnostic(final String reason, final ClusterState state, final ClusterStateHealth health,
+            final List<Progress> progressList) {
+        final StringBuilder buf = new StringBuilder(500);
+        buf.append(reason).append(": status=").append(health.getStatus())//
+                .append(", nodes=").append(state.nodes().getSize())//
+                .append(", master=").append(state.nodes().getMasterNode() != null ? state.nodes().getMasterNode().getName() : null)//
+                .append(", active_shards=").append(health.getActiveShards())//
+                .append(", unassigned=").append(health.getUnassignedShards())//
+                .append(", initializing=").append(health.getInitializingShards())//
+                .append(", relocating=").append(health.getRelocatingShards());
+        if (state.nodes().isLocalNodeElectedMaster()) {
+            buf.append(", pending_tasks=").append(clusterService.getMasterService().numberOfPendingTasks());
+        }
+        int count = 0;
+        for (final ShardRouting shardRouting : state.getRoutingNodes().unassigned()) {
+            if (count == 0) {
+                buf.append("\nunassigned shards:");
+            }
+            if (count >= MAX_UNASSIGNED_SHARDS_IN_DIAGNOSTIC) {
+                buf.append("\n  ...");
+                break;
+            }
+            final UnassignedInfo unassignedInfo = shardRouting.unassignedInfo();
+            buf.append("\n  ").append(shardRouting.shardId()).append(shardRouting.primary() ? " primary" : " replica");
+            if (unassignedInfo != null) {
+                buf.append(" reason=").append(unassignedInfo.getReason())//
+                        .append(" status=").append(unassignedInfo.getLastAllocationStatus());
+                if (unassignedInfo.getDetails() != null) {
+                    buf.append(" details=").append(unassignedInfo.getDetails());
+                }
+            }
+            count++;
+        }
+        buf.append("\nprogress:");
+        for (final Progress progress : progressList.subList(Math.max(0, progressList.size() - MAX_PROGRESS_IN_DIAGNOSTIC),
+                progressList.size())) {
+            buf.append("\n  ").append(progress);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Shard counts at a point of time.
+     */
+    public static class Progress {
+        private final long elapsedMillis;
+
+        private final ClusterHealthStatus status;
+
+        private final int unassignedShards;
+
+        private final int initializingShards;
+
+        private final int relocatingShards;
+
+        public Progress(final long elapsedMillis, final ClusterHealthStatus status, final int unassignedShards,
+                final int initializingShards, final int relocatingShards) {
+            this.elapsedMillis = elapsedMillis;
+            this.status = status;
+            this.unassignedShards = unassignedShards;
+            this.initializingShards = initializingShards;
+            this.relocatingShards = relocatingShards;
+        }
+
+        boolean sameShardCounts(final Progress other) {
+            return status == other.status && unassignedShards == other.unassignedShards
+                    && initializingShards == other.initializingShards && relocatingShards == other.relocatingShards;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public ClusterHealthStatus getStatus() {
+            return status;
+        }
+
+        public int getUnassignedShards() {
+            return unassignedShards;
+        }
+
+        public int getInitializingShards() {
+            return initializingShards;
+        }
+
+        public int getRelocatingShards() {
+            return relocatingShards;
+        }
+
+        @Override
+        public String toString() {
+            return "+" + elapsedMillis + "ms " + status + " unassigned=" + unassignedShards + " initializing=" + initializingShards
+                    + " relocating=" + relocatingShards;
+        }
+    }
+
+    /**
+     * The result of a wait.
+     */
+    public static class Result {
+        private final ClusterHealthStatus status;
+
+        private final boolean timedOut;
+
+        private final String failure;
+
+        private final List<Progress> progressList;
+
+        public Result(final ClusterHealthStatus status, final boolean timedOut, final String failure, final List<Progress> progressList) {
+            this.status = status;
+            this.timedOut = timedOut;
+            this.failure = failure;
+            this.progressList = Collections.unmodifiableList(progressList);
+        }
+
+        public ClusterHealthStatus getStatus() {
+            return status;
+        }
+
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        /**
+         * @return true if the condition is satisfied
+         */
+        public boolean isSuccess() {
+            return failure == null;
+        }
+
+        /**
+         * @return a compact diagnostic, or null on success
+         */
+        public String getFailure() {
+            return failure;
+        }
+
+        public List<Progress> getProgressList() {
+            return progressList;
+        }
+    }
+}
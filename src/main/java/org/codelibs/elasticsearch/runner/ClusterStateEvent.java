@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner;
+
+/**
+ * A typed change of cluster state observed on a node.
+ */
+public class ClusterStateEvent {
+
+    public enum Type {
+        INDEX_CREATED, INDEX_DELETED, MAPPING_CHANGED, ALIASES_CHANGED, SETTINGS_CHANGED, SHARD_CHANGED, MASTER_CHANGED,
+        NODES_CHANGED, METADATA_CHANGED
+    }
+
+    private final Type type;
+
+    private final String nodeName;
+
+    private final long stateVersion;
+
+    private final String index;
+
+    private final int shardId;
+
+    private final String detail;
+
+    private final long timestampNanos;
+
+    public ClusterStateEvent(final Type type, final String nodeName, final long stateVersion, final String index, final int shardId,
+            final String detail) {
+        this.type = type;
+        this.nodeName = nodeName;
+        this.stateVersion = stateVersion;
+        this.index = index;
+        this.shardId = shardId;
+        this.detail = detail;
+        this.timestampNanos = System.nanoTime();
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return a name of the node which applied the cluster state
+     */
+    public String getNodeName() {
+        return nodeName;
+    }
+
+    public long getStateVersion() {
+        return stateVersion;
+    }
+
+    /**
+     * @return an index name, or null for cluster-level events
+     */
+    public String getIndex() {
+        return index;
+    }
+
+    /**
+     * @return a shard number, or -1 for non-shard events
+     */
+    public int getShardId() {
+        return shardId;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * @return System.nanoTime() when the event was observed
+     */
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ClusterStateEvent [type=" + type + ", nodeName=" + nodeName + ", stateVersion=" + stateVersion + ", index=" + index
+                + ", shardId=" + shardId + ", detail=" + detail + "]";
+    }
+}
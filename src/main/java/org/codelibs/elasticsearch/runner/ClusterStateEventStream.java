@@ -0,0 +1,231 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import org.codelibs.elasticsearch.runner.ClusterStateEvent.Type;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.metadata.IndexMetadata;
+import org.elasticsearch.cluster.routing.IndexRoutingTable;
+import org.elasticsearch.cluster.routing.IndexShardRoutingTable;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.index.Index;
+
+/**
+ * ClusterStateEventStream converts cluster state changes applied on nodes into
+ * {@link ClusterStateEvent}s and buffers them in a bounded queue.
+ * Listeners run on the cluster applier thread and never block it: when the queue
+ * is full, new events are dropped and counted.
+ */
+public class ClusterStateEventStream implements Closeable {
+
+    private final BlockingQueue<ClusterStateEvent> queue;
+
+    private final Set<Type> types;
+
+    private final List<Subscription> subscriptions = new ArrayList<>();
+
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    /**
+     * @param clusterServices cluster services of nodes to observe, with node names as keys
+     * @param capacity the max number of buffered events
+     * @param types event types to receive, or empty for all types
+     */
+    public ClusterStateEventStream(final Map<String, ClusterService> clusterServices, final int capacity, final Collection<Type> types) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.types = types == null || types.isEmpty() ? EnumSet.allOf(Type.class) : EnumSet.copyOf(types);
+        for (final Map.Entry<String, ClusterService> entry : clusterServices.entrySet()) {
+            final ClusterStateListener listener = event -> onClusterChanged(entry.getKey(), event);
+            entry.getValue().addListener(listener);
+            subscriptions.add(new Subscription(entry.getValue(), listener));
+        }
+    }
+
+    /**
+     * Retrieve the next event.
+     *
+     * @param timeout timeout
+     * @return an event, or null if no event arrives in time
+     */
+    public ClusterStateEvent poll(final TimeValue timeout) {
+        try {
+            return queue.poll(timeout.millis(), TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClusterRunnerException("Interrupted while waiting for a cluster state event.", e);
+        }
+    }
+
+    /**
+     * Wait for an event which matches a condition. Unmatched events are discarded.
+     *
+     * @param predicate a condition
+     * @param timeout timeout
+     * @return a matched event, or null if no event matches in time
+     */
+    public ClusterStateEvent await(final Predicate<ClusterStateEvent> predicate, final TimeValue timeout) {
+        final long deadline = System.nanoTime() + timeout.nanos();
+        while (true) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            final ClusterStateEvent event = poll(TimeValue.timeValueNanos(remaining));
+            if (event == null) {
+                return null;
+            }
+            if (predicate.test(event)) {
+                return event;
+            }
+        }
+    }
+
+    /**
+     * @return all buffered events
+     */
+    public List<ClusterStateEvent> drain() {
+        final List<ClusterStateEvent> events = new ArrayList<>();
+        queue.drainTo(events);
+        return events;
+    }
+
+    /**
+     * @return the number of events dropped because the queue was full
+     */
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    @Override
+    public void close() {
+        for (final Subscription subscription : subscriptions) {
+            subscription.clusterService.removeListener(subscription.listener);
+        }
+        subscriptions.clear();
+    }
+
+    protected void onClusterChanged(final String nodeName, final ClusterChangedEvent event) {
+        final ClusterState previous = event.previousState();
+        final ClusterState current = event.state();
+        final long version = current.version();
+
+        for (final String index : event.indicesCreated()) {
+            publish(new ClusterStateEvent(Type.INDEX_CREATED, nodeName, version, index, -1, null));
+        }
+        for (final Index index : event.indicesDeleted()) {
+            publish(new ClusterStateEvent(Type.INDEX_DELETED, nodeName, version, index.getName(), -1, null));
+        }
+
+        final String previousMaster = previous.nodes().getMasterNodeId();
+        final String currentMaster = current.nodes().getMasterNodeId();
+        if (!Objects.equals(previousMaster, currentMaster)) {
+            publish(new ClusterStateEvent(Type.MASTER_CHANGED, nodeName, version, null, -1,
+                    current.nodes().getMasterNode() != null ? current.nodes().getMasterNode().getName() : null));
+        }
+        if (event.nodesChanged()) {
+            publish(new ClusterStateEvent(Type.NODES_CHANGED, nodeName, version, null, -1, event.nodesDelta().shortSummary()));
+        }
+
+        if (event.metadataChanged()) {
+            for (final IndexMetadata indexMetadata : current.metadata().indices().values()) {
+                final IndexMetadata previousMetadata = previous.metadata().index(indexMetadata.getIndex().getName());
+                if (previousMetadata == null || previousMetadata == indexMetadata) {
+                    continue;
+                }
+                final String index = indexMetadata.getIndex().getName();
+                if (previousMetadata.getMappingVersion() != indexMetadata.getMappingVersion()) {
+                    publish(new ClusterStateEvent(Type.MAPPING_CHANGED, nodeName, version, index, -1, null));
+                }
+                if (previousMetadata.getAliasesVersion() != indexMetadata.getAliasesVersion()) {
+                    publish(new ClusterStateEvent(Type.ALIASES_CHANGED, nodeName, version, index, -1,
+                            String.join(",", indexMetadata.getAliases().keySet())));
+                }
+                if (previousMetadata.getSettingsVersion() != indexMetadata.getSettingsVersion()) {
+                    publish(new ClusterStateEvent(Type.SETTINGS_CHANGED, nodeName, version, index, -1, null));
+                }
+            }
+            publish(new ClusterStateEvent(Type.METADATA_CHANGED, nodeName, version, null, -1,
+                    "metadata version " + current.metadata().version()));
+        }
+
+        if (event.routingTableChanged() && types.contains(Type.SHARD_CHANGED)) {
+            for (final Map.Entry<String, IndexRoutingTable> entry : current.routingTable().indicesRouting().entrySet()) {
+                final IndexRoutingTable previousTable = previous.routingTable().index(entry.getKey());
+                if (previousTable == entry.getValue()) {
+                    continue;
+                }
+                final Set<ShardRouting> previousShards = getShards(previousTable);
+                for (final ShardRouting shardRouting : getShards(entry.getValue())) {
+                    if (!previousShards.contains(shardRouting)) {
+                        publish(new ClusterStateEvent(Type.SHARD_CHANGED, nodeName, version, entry.getKey(), shardRouting.id(),
+                                (shardRouting.primary() ? "primary " : "replica ") + shardRouting.state() + " on "
+                                        + shardRouting.currentNodeId()));
+                    }
+                }
+            }
+        }
+    }
+
+    private static Set<ShardRouting> getShards(final IndexRoutingTable indexRoutingTable) {
+        final Set<ShardRouting> shards = new HashSet<>();
+        if (indexRoutingTable != null) {
+            for (int i = 0; i < indexRoutingTable.size(); i++) {
+                final IndexShardRoutingTable shardRoutingTable = indexRoutingTable.shard(i);
+                for (int j = 0; j < shardRoutingTable.size(); j++) {
+                    shards.add(shardRoutingTable.shard(j));
+                }
+            }
+        }
+        return shards;
+    }
+
+    protected void publish(final ClusterStateEvent event) {
+        if (types.contains(event.getType()) && !queue.offer(event)) {
+            droppedEvents.incrementAndGet();
+        }
+    }
+
+    private static class Subscription {
+        private final ClusterService clusterService;
+
+        private final ClusterStateListener listener;
+
+        Subscription(final ClusterService clusterService, final ClusterStateListener listener) {
+            this.clusterService = clusterService;
+            this.listener = listener;
+        }
+    }
+}
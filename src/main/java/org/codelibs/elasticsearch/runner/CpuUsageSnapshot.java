@@ -0,0 +1,136 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * CpuUsageSnapshot captures threads, context switches and CPU time of the current JVM process.
+ * Context switches are read from /proc and are -1 on other platforms.
+ */
+public class CpuUsageSnapshot {
+
+    private static final Path TASK_PATH = Paths.get("/proc/self/task");
+
+    private final long timestamp;
+
+    private final int threads;
+
+    private final long voluntaryContextSwitches;
+
+    private final long nonvoluntaryContextSwitches;
+
+    private final long processCpuTime;
+
+    public CpuUsageSnapshot(final long timestamp, final int threads, final long voluntaryContextSwitches,
+            final long nonvoluntaryContextSwitches, final long processCpuTime) {
+        this.timestamp = timestamp;
+        this.threads = threads;
+        this.voluntaryContextSwitches = voluntaryContextSwitches;
+        this.nonvoluntaryContextSwitches = nonvoluntaryContextSwitches;
+        this.processCpuTime = processCpuTime;
+    }
+
+    /**
+     * @return usage of the current process
+     */
+    public static CpuUsageSnapshot capture() {
+        long voluntary = -1;
+        long nonvoluntary = -1;
+        if (Files.isDirectory(TASK_PATH)) {
+            voluntary = 0;
+            nonvoluntary = 0;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(TASK_PATH)) {
+                for (final Path task : stream) {
+                    final List<String> lines;
+                    try {
+                        lines = Files.readAllLines(task.resolve("status"));
+                    } catch (final IOException e) {
+                        // the thread has terminated
+                        continue;
+                    }
+                    for (final String line : lines) {
+                        if (line.startsWith("voluntary_ctxt_switches:")) {
+                            voluntary += Long.parseLong(line.substring(line.indexOf(':') + 1).trim());
+                        } else if (line.startsWith("nonvoluntary_ctxt_switches:")) {
+                            nonvoluntary += Long.parseLong(line.substring(line.indexOf(':') + 1).trim());
+                        }
+                    }
+                }
+            } catch (final IOException e) {
+                voluntary = -1;
+                nonvoluntary = -1;
+            }
+        }
+        long cpuTime = -1;
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof final com.sun.management.OperatingSystemMXBean osBean) {
+            cpuTime = osBean.getProcessCpuTime();
+        }
+        return new CpuUsageSnapshot(System.nanoTime(), ManagementFactory.getThreadMXBean().getThreadCount(), voluntary, nonvoluntary,
+                cpuTime);
+    }
+
+    /**
+     * Return usage since a previous snapshot. The number of threads is the current value.
+     *
+     * @param previous a previous snapshot
+     * @return a snapshot with differences
+     */
+    public CpuUsageSnapshot diff(final CpuUsageSnapshot previous) {
+        return new CpuUsageSnapshot(timestamp - previous.timestamp, threads, diff(voluntaryContextSwitches, previous.voluntaryContextSwitches),
+                diff(nonvoluntaryContextSwitches, previous.nonvoluntaryContextSwitches), diff(processCpuTime, previous.processCpuTime));
+    }
+
+    private static long diff(final long current, final long previous) {
+        return current < 0 || previous < 0 ? -1 : current - previous;
+    }
+
+    /**
+     * @return System.nanoTime() at capture, or elapsed nanos for a diff
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getVoluntaryContextSwitches() {
+        return voluntaryContextSwitches;
+    }
+
+    public long getNonvoluntaryContextSwitches() {
+        return nonvoluntaryContextSwitches;
+    }
+
+    public long getProcessCpuTime() {
+        return processCpuTime;
+    }
+
+    @Override
+    public String toString() {
+        return "threads=" + threads + ", voluntary_ctxt_switches=" + voluntaryContextSwitches + ", nonvoluntary_ctxt_switches="
+                + nonvoluntaryContextSwitches + ", cpu_time=" + processCpuTime / 1000000 + "ms";
+    }
+}
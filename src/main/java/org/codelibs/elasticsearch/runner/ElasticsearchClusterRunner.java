@@ -21,8 +21,11 @@ import static org.elasticsearch.common.settings.Settings.builder;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.ConnectException;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
@@ -32,23 +35,56 @@ import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.codelibs.elasticsearch.runner.data.DocumentGenerator;
+import org.codelibs.elasticsearch.runner.data.DocumentRandom;
+import org.codelibs.elasticsearch.runner.fault.NetworkFaultPlugin;
+import org.codelibs.elasticsearch.runner.fault.NetworkFaults;
+import org.codelibs.elasticsearch.runner.store.IoStats;
+import org.codelibs.elasticsearch.runner.store.ThrottledStorePlugin;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ResourceNotFoundException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequestBuilder;
 import org.elasticsearch.action.ActionResponse;
 import org.elasticsearch.action.DocWriteResponse;
 import org.elasticsearch.action.DocWriteResponse.Result;
 import org.elasticsearch.action.ShardOperationFailedException;
-import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.action.admin.cluster.node.stats.NodeStats;
+import org.elasticsearch.action.admin.cluster.node.tasks.list.ListTasksResponse;
+import org.elasticsearch.action.admin.cluster.remote.RemoteInfoAction;
+import org.elasticsearch.action.admin.cluster.remote.RemoteInfoRequest;
+import org.elasticsearch.action.admin.cluster.settings.ClusterUpdateSettingsResponse;
+import org.elasticsearch.action.admin.cluster.snapshots.create.CreateSnapshotRequestBuilder;
+import org.elasticsearch.action.admin.cluster.snapshots.restore.RestoreSnapshotRequestBuilder;
+import org.elasticsearch.action.admin.cluster.snapshots.status.SnapshotStatus;
 import org.elasticsearch.action.admin.cluster.tasks.PendingClusterTasksRequest;
 import org.elasticsearch.action.admin.cluster.tasks.PendingClusterTasksResponse;
 import org.elasticsearch.action.admin.cluster.tasks.TransportPendingClusterTasksAction;
@@ -66,36 +102,82 @@ import org.elasticsearch.action.admin.indices.get.GetIndexResponse;
 import org.elasticsearch.action.admin.indices.mapping.put.PutMappingRequestBuilder;
 import org.elasticsearch.action.admin.indices.open.OpenIndexRequestBuilder;
 import org.elasticsearch.action.admin.indices.open.OpenIndexResponse;
+import org.elasticsearch.action.admin.indices.recovery.RecoveryResponse;
 import org.elasticsearch.action.admin.indices.refresh.RefreshRequestBuilder;
+import org.elasticsearch.action.admin.indices.stats.IndicesStatsResponse;
+import org.elasticsearch.action.admin.indices.stats.ShardStats;
+import org.elasticsearch.action.admin.indices.template.delete.TransportDeleteComponentTemplateAction;
+import org.elasticsearch.action.admin.indices.template.delete.TransportDeleteComposableIndexTemplateAction;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.datastreams.DeleteDataStreamAction;
 import org.elasticsearch.action.delete.DeleteRequestBuilder;
 import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.ingest.SimulateDocumentResult;
+import org.elasticsearch.action.ingest.SimulatePipelineResponse;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.support.PlainActionFuture;
 import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
 import org.elasticsearch.action.support.broadcast.BroadcastResponse;
 import org.elasticsearch.action.support.master.AcknowledgedResponse;
 import org.elasticsearch.client.internal.AdminClient;
 import org.elasticsearch.client.internal.Client;
+import org.elasticsearch.client.internal.node.NodeClient;
 import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.cluster.metadata.DataStream;
+import org.elasticsearch.cluster.metadata.MappingMetadata;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.metadata.Metadata;
 import org.elasticsearch.cluster.service.ClusterService;
-import org.elasticsearch.common.Priority;
 import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.logging.LogConfigurator;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.core.TimeValue;
 import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexModule;
 import org.elasticsearch.index.IndexNotFoundException;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.reindex.AbstractBulkByScrollRequest;
+import org.elasticsearch.index.reindex.BulkByScrollResponse;
+import org.elasticsearch.index.reindex.ReindexAction;
+import org.elasticsearch.index.reindex.ReindexRequest;
+import org.elasticsearch.ingest.IngestMetadata;
+import org.elasticsearch.ingest.IngestStats;
+import org.elasticsearch.ingest.PipelineConfiguration;
 import org.elasticsearch.node.ClusterRunnerNode;
 import org.elasticsearch.node.InternalSettingsPreparer;
 import org.elasticsearch.node.Node;
 import org.elasticsearch.node.NodeValidationException;
 import org.elasticsearch.plugins.ClusterRunnerPluginsService;
 import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.reindex.RethrottleAction;
+import org.elasticsearch.reindex.RethrottleRequest;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptContext;
+import org.elasticsearch.script.ScriptMetadata;
+import org.elasticsearch.script.ScriptModule;
+import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.script.ScriptType;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
 import org.elasticsearch.search.sort.SortBuilder;
 import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.snapshots.RestoreInfo;
+import org.elasticsearch.snapshots.SnapshotInfo;
+import org.elasticsearch.snapshots.SnapshotState;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.tasks.TaskId;
+import org.elasticsearch.transport.RemoteConnectionInfo;
+import org.elasticsearch.transport.TransportService;
 import org.elasticsearch.xcontent.XContentBuilder;
 import org.elasticsearch.xcontent.XContentType;
 import org.elasticsearch.xcontent.json.JsonXContent;
@@ -124,6 +206,22 @@ public class ElasticsearchClusterRunner implements Closeable {
 
     public static final String ELASTICSEARCH_YAML = "elasticsearch.yml";
 
+    public static final String CONFIG_HASH_SUFFIX = ".sha256";
+
+    public static final String RESET_MODE_NONE = "none";
+
+    public static final String RESET_MODE_API = "api";
+
+    public static final String RESET_MODE_FILES = "files";
+
+    public static final String SETTINGS_PRESET_NONE = "none";
+
+    public static final String SETTINGS_PRESET_DENSE = "dense";
+
+    public static final String TRANSPORT_MODE_NETTY = "netty";
+
+    public static final String TRANSPORT_MODE_TUNED = "tuned";
+
     public static final String[] MODULE_TYPES = new String[] { //
             "org.elasticsearch.aggregations.AggregationsPlugin", //
             "org.elasticsearch.analysis.common.CommonAnalysisPlugin", //
@@ -154,12 +252,16 @@ public class ElasticsearchClusterRunner implements Closeable {
 
     };
 
+    public static final String WARMUP_INDEX = "cluster_runner_warmup";
+
     public static final String DATA_DIR = "data";
 
     public static final String LOGS_DIR = "logs";
 
     public static final String CONFIG_DIR = "config";
 
+    public static final String REPO_DIR = "repo";
+
     protected List<Node> nodeList = new ArrayList<>();
 
     protected List<Environment> envList = new ArrayList<>();
@@ -177,6 +279,12 @@ public class ElasticsearchClusterRunner implements Closeable {
     @Option(name = "-dataPath", usage = "Data path for Elasticsearch.")
     protected String dataPath;
 
+    @Option(name = "-dataPaths", usage = "Comma-separated mount points to spread data paths of nodes.")
+    protected String dataPaths;
+
+    @Option(name = "-numOfDataPaths", usage = "The number of data paths per node.")
+    protected int numOfDataPaths = 1;
+
     @Option(name = "-logsPath", usage = "Log path for Elasticsearch.")
     protected String logsPath;
 
@@ -192,6 +300,9 @@ public class ElasticsearchClusterRunner implements Closeable {
     @Option(name = "-indexStoreType", usage = "Index store type.")
     protected String indexStoreType = "fs";
 
+    @Option(name = "-nodeRoles", usage = "Comma-separated node roles, used unless node.roles is set (default: master,data).")
+    protected String nodeRoles = "master,data";
+
     @Option(name = "-useLogger", usage = "Print logs to a logger.")
     protected boolean useLogger = false;
 
@@ -210,8 +321,64 @@ public class ElasticsearchClusterRunner implements Closeable {
     @Option(name = "-pluginTypes", usage = "Plugin types.")
     protected String pluginTypes;
 
+    @Option(name = "-resetMode", usage = "Reset mode for a reused base path (none, api or files).")
+    protected String resetMode = RESET_MODE_NONE;
+
+    @Option(name = "-telemetryInterval", usage = "Telemetry sampling interval in milliseconds (0 disables it).")
+    protected long telemetryInterval = 0;
+
+    @Option(name = "-telemetryCapacity", usage = "The max number of buffered telemetry samples.")
+    protected int telemetryCapacity = 10000;
+
+    protected NodeTelemetryCollector telemetryCollector;
+
+    @Option(name = "-flightRecorder", usage = "Record a JFR recording from build() to close() (default or profile).")
+    protected String flightRecorder;
+
+    @Option(name = "-flightRecorderActions", usage = "Record each transport action sent by runner helpers in a JFR recording.")
+    protected boolean flightRecorderActions = false;
+
+    protected FlightRecorderSession flightRecorderSession;
+
+    protected final Map<Node, Client> runnerClients = new ConcurrentHashMap<>();
+
+    protected final ThreadLocal<RunnerCall> currentCall = new ThreadLocal<>();
+
+    @Option(name = "-slowLogThreshold", usage = "Latency in milliseconds to log a slow call (-1 disables it).")
+    protected long slowLogThreshold = -1;
+
+    @Option(name = "-slowLogTopN", usage = "The number of the slowest calls printed on close.")
+    protected int slowLogTopN = 10;
+
+    @Option(name = "-slowLogSource", usage = "Log a request source of a slow call.")
+    protected boolean slowLogSource = false;
+
+    protected SlowCallLog slowCallLog;
+
+    @Option(name = "-settingsPreset", usage = "Node settings preset (none or dense).")
+    protected String settingsPreset = SETTINGS_PRESET_NONE;
+
+    @Option(name = "-cpuBudget", usage = "The number of processors shared by all nodes (0 disables it).")
+    protected int cpuBudget = 0;
+
+    @Option(name = "-transportMode", usage = "Transport mode (netty or tuned).")
+    protected String transportMode = TRANSPORT_MODE_NETTY;
+
+    @Option(name = "-networkFaults", usage = "Install a plugin to inject network faults between nodes.")
+    protected boolean networkFaults = false;
+
+    @Option(name = "-ioThrottle", usage = "Disk I/O limits per node, e.g. \"2:read=20mb,write=10mb,iops=100,latency=5ms;3:latency=20ms\".")
+    protected String ioThrottle;
+
+    @Option(name = "-prewarmScripts", usage = "A directory of scripts named <id>.<context>.<lang>, which are stored and compiled on start.")
+    protected String prewarmScripts;
+
     protected Builder settingsBuilder;
 
+    protected final Map<String, PlainActionFuture<BulkByScrollResponse>> reindexTasks = new ConcurrentHashMap<>();
+
+    protected TimeValue healthTimeout = TimeValue.timeValueSeconds(30);
+
     public static void main(final String[] args) {
         try (final ElasticsearchClusterRunner runner = new ElasticsearchClusterRunner()) {
             Runtime.getRuntime().addShutdownHook(new Thread() {
@@ -266,6 +433,11 @@ public class ElasticsearchClusterRunner implements Closeable {
      */
     @Override
     public void close() throws IOException {
+        stopTelemetry();
+        reindexTasks.clear();
+        if (networkFaults && !nodeList.isEmpty()) {
+            NetworkFaults.remove(nodeList.get(0).settings().get("cluster.name"));
+        }
         final List<IOException> exceptionList = new ArrayList<>();
         for (final Node node : nodeList) {
             try {
@@ -274,6 +446,8 @@ public class ElasticsearchClusterRunner implements Closeable {
                 exceptionList.add(e);
             }
         }
+        stopFlightRecorder();
+        printSlowCalls();
         if (exceptionList.isEmpty()) {
             print("Closed all nodes.");
         } else {
@@ -286,22 +460,206 @@ public class ElasticsearchClusterRunner implements Closeable {
         }
     }
 
+    /**
+     * Start sampling telemetry of running nodes.
+     * Samples are written to telemetry.csv and telemetry.json in a log directory on close().
+     *
+     * @param intervalMillis a sampling interval
+     * @param capacity the max number of buffered samples
+     * @return a telemetry collector
+     */
+    public NodeTelemetryCollector startTelemetry(final long intervalMillis, final int capacity) {
+        if (telemetryCollector != null) {
+            throw new ClusterRunnerException("Telemetry is already started.");
+        }
+        telemetryCollector = new NodeTelemetryCollector(() -> {
+            final Map<String, Node> nodes = new LinkedHashMap<>();
+            for (final Node node : nodeList) {
+                nodes.put(node.settings().get(NODE_NAME), node);
+            }
+            return nodes;
+        }, intervalMillis, capacity);
+        print("Started telemetry: interval=" + intervalMillis + "ms");
+        return telemetryCollector;
+    }
+
+    /**
+     * Stop sampling telemetry and export buffered samples.
+     */
+    public void stopTelemetry() {
+        if (telemetryCollector == null) {
+            return;
+        }
+        telemetryCollector.close();
+        final Path outputPath = getRunnerLogsPath();
+        try {
+            telemetryCollector.exportCsv(outputPath.resolve("telemetry.csv"));
+            telemetryCollector.exportJson(outputPath.resolve("telemetry.json"));
+            print("Exported telemetry to " + outputPath);
+        } catch (final IOException e) {
+            print("Failed to export telemetry: " + e.getLocalizedMessage());
+        }
+        telemetryCollector = null;
+    }
+
+    /**
+     * Start a JFR recording which is dumped to a log directory on close() or on a failure.
+     *
+     * @param configuration a JFR configuration name, such as "default" or "profile"
+     * @return a flight recorder session
+     */
+    public FlightRecorderSession startFlightRecorder(final String configuration) {
+        return startFlightRecorder(configuration, false);
+    }
+
+    /**
+     * Start a JFR recording which is dumped to a log directory on close() or on a failure.
+     * Runner helper calls are recorded as events, and transport actions sent by them are
+     * recorded as well if recordActions is true.
+     *
+     * @param configuration a JFR configuration name, such as "default" or "profile"
+     * @param recordActions true if each transport action is recorded
+     * @return a flight recorder session
+     */
+    public FlightRecorderSession startFlightRecorder(final String configuration, final boolean recordActions) {
+        if (flightRecorderSession != null) {
+            throw new ClusterRunnerException("Flight recorder is already started.");
+        }
+        flightRecorderSession = new FlightRecorderSession(getRunnerLogsPath(), configuration, recordActions);
+        print("Started flight recorder: " + configuration);
+        return flightRecorderSession;
+    }
+
+    /**
+     * Stop a JFR recording and dump it to a log directory.
+     */
+    public void stopFlightRecorder() {
+        if (flightRecorderSession == null) {
+            return;
+        }
+        try {
+            print("Dumped flight recording to " + flightRecorderSession.dump("session"));
+        } catch (final ClusterRunnerException e) {
+            print(e.getLocalizedMessage());
+        } finally {
+            flightRecorderSession.close();
+            flightRecorderSession = null;
+            runnerClients.clear();
+        }
+    }
+
+    protected void dumpFlightRecording(final String label) {
+        if (flightRecorderSession != null) {
+            try {
+                print("Dumped flight recording to " + flightRecorderSession.dump(label));
+            } catch (final ClusterRunnerException e) {
+                print(e.getLocalizedMessage());
+            }
+        }
+    }
+
+    /**
+     * Log runner helper calls, such as search(), insert() or ensureGreen(), which take longer than a threshold.
+     *
+     * @param threshold a latency to log a call
+     * @param topN the number of the slowest calls printed on close()
+     * @param includeSource true if a request source is logged
+     * @return a slow call log
+     */
+    public SlowCallLog enableSlowLog(final TimeValue threshold, final int topN, final boolean includeSource) {
+        slowCallLog = new SlowCallLog(threshold.millis(), topN, includeSource);
+        return slowCallLog;
+    }
+
+    /**
+     * Print the slowest calls.
+     */
+    public void printSlowCalls() {
+        if (slowCallLog == null) {
+            return;
+        }
+        final List<SlowCallLog.SlowCall> calls = slowCallLog.getSlowestCalls();
+        if (calls.isEmpty()) {
+            return;
+        }
+        print("Slow calls: " + slowCallLog.getCount());
+        for (final SlowCallLog.SlowCall call : calls) {
+            print("  " + call);
+        }
+    }
+
+    /**
+     * Start a helper call which is recorded in the slow log and as a JFR event.
+     * Only the outermost helper call on a thread is recorded.
+     *
+     * @param method a helper name
+     * @param indices target indices
+     * @return a call to close, or null if nothing records it
+     */
+    protected RunnerCall startCall(final String method, final String... indices) {
+        if ((slowCallLog == null && flightRecorderSession == null) || currentCall.get() != null) {
+            return null;
+        }
+        final String index = indices == null || indices.length == 0 || indices[0] == null ? null : String.join(",", indices);
+        final String nodeName = node().settings().get(NODE_NAME);
+        final SlowCallLog.Call slowCall = slowCallLog == null ? null : slowCallLog.start(method, index, nodeName);
+        FlightRecorderSession.RunnerCallEvent event = null;
+        if (flightRecorderSession != null) {
+            event = new FlightRecorderSession.RunnerCallEvent();
+            event.nodeName = nodeName;
+            event.method = method;
+            event.indices = index;
+            event.begin();
+        }
+        final RunnerCall call = new RunnerCall(currentCall, slowCall, event);
+        currentCall.set(call);
+        return call;
+    }
+
+    /**
+     * Attach a request built by a callback to a helper call as its source.
+     *
+     * @param call a helper call, or null
+     * @param builder a builder callback
+     * @return a builder callback which records the request
+     */
+    protected <T extends ActionRequestBuilder<?, ?>> BuilderCallback<T> recordSource(final RunnerCall call,
+            final BuilderCallback<T> builder) {
+        if (call == null) {
+            return builder;
+        }
+        return b -> {
+            final T requestBuilder = builder.apply(b);
+            call.source(() -> requestBuilder.request().toString());
+            return requestBuilder;
+        };
+    }
+
+    protected Path getRunnerLogsPath() {
+        final Path path = logsPath != null ? Paths.get(logsPath) : Paths.get(basePath, LOGS_DIR);
+        createDir(path);
+        return path;
+    }
+
     /**
      * Delete all configuration files and directories.
      */
     public void clean() {
         LogManager.shutdown();
-        final Path bPath = FileSystems.getDefault().getPath(basePath);
+        deleteDir(FileSystems.getDefault().getPath(basePath));
+    }
+
+    protected void deleteDir(final Path path) {
         final CleanUpFileVisitor visitor = new CleanUpFileVisitor();
         try {
-            Files.walkFileTree(bPath, visitor);
+            Files.walkFileTree(path, visitor);
             if (visitor.hasErrors()) {
                 throw new ClusterRunnerException(visitor.getErrors().stream()
                         .map(e -> e.getLocalizedMessage())
                         .collect(Collectors.joining("\n")));
             }
         } catch (IOException e) {
-            throw new ClusterRunnerException("Failed to delete " + bPath, e);
+            throw new ClusterRunnerException("Failed to delete " + path, e);
         }
     }
 
@@ -341,6 +699,16 @@ public class ElasticsearchClusterRunner implements Closeable {
             }
         }
 
+        if (!RESET_MODE_NONE.equals(resetMode) && !RESET_MODE_API.equals(resetMode) && !RESET_MODE_FILES.equals(resetMode)) {
+            throw new ClusterRunnerException("Unknown reset mode: " + resetMode);
+        }
+        if (!SETTINGS_PRESET_NONE.equals(settingsPreset) && !SETTINGS_PRESET_DENSE.equals(settingsPreset)) {
+            throw new ClusterRunnerException("Unknown settings preset: " + settingsPreset);
+        }
+        if (!TRANSPORT_MODE_NETTY.equals(transportMode) && !TRANSPORT_MODE_TUNED.equals(transportMode)) {
+            throw new ClusterRunnerException("Unknown transport mode: " + transportMode);
+        }
+
         if (basePath == null) {
             try {
                 basePath = Files.createTempDirectory("es-cluster").toAbsolutePath().toString();
@@ -362,6 +730,12 @@ public class ElasticsearchClusterRunner implements Closeable {
                 logger.debug("{} is not found.", moduleType, e);
             }
         }
+        if (networkFaults) {
+            pluginList.add(NetworkFaultPlugin.class);
+        }
+        if (ioThrottle != null) {
+            pluginList.add(ThrottledStorePlugin.class);
+        }
         if (pluginTypes != null) {
             for (final String value : pluginTypes.split(",")) {
                 final String pluginType = value.trim();
@@ -380,23 +754,49 @@ public class ElasticsearchClusterRunner implements Closeable {
         print("Base Path:    " + basePath);
         print("Num Of Node:  " + numOfNode);
 
+        if (flightRecorder != null) {
+            startFlightRecorder(flightRecorder, flightRecorderActions);
+        }
+        if (slowLogThreshold >= 0) {
+            enableSlowLog(TimeValue.timeValueMillis(slowLogThreshold), slowLogTopN, slowLogSource);
+        }
+
         for (int i = 0; i < numOfNode; i++) {
             execute(i + 1);
             System.setProperty("es.set.netty.runtime.available.processors", "false");
         }
+
+        if (RESET_MODE_API.equals(resetMode)) {
+            ensureYellow();
+            wipeIndices();
+        }
+
+        if (prewarmScripts != null) {
+            ensureYellow();
+            prewarmScripts(Paths.get(prewarmScripts));
+        }
+
+        if (telemetryInterval > 0) {
+            startTelemetry(telemetryInterval, telemetryCapacity);
+        }
+
+        if (cpuBudget > 0) {
+            print("CPU Usage:    " + captureCpuUsage());
+        }
     }
 
     protected void execute(final int id) {
         final String nodeName = "Node " + id;
+        final FlightRecorderSession.NodeStartupEvent prepareEvent = newNodeStartupEvent(nodeName, "prepare");
         final Path homePath = Paths.get(basePath, nodeName.replace(' ', '_').toLowerCase(Locale.ROOT));
         final Path confPath = this.confPath == null ? homePath.resolve(CONFIG_DIR) : Paths.get(this.confPath);
         final Path logsPath = this.logsPath == null ? homePath.resolve(LOGS_DIR) : Paths.get(this.logsPath);
-        final Path dataPath = this.dataPath == null ? homePath.resolve(DATA_DIR) : Paths.get(this.dataPath);
+        final List<Path> dataPathList = getDataPaths(id, homePath);
 
         createDir(homePath);
         createDir(confPath);
         createDir(logsPath);
-        createDir(dataPath);
+        dataPathList.forEach(this::createDir);
 
         final Settings.Builder builder = builder();
 
@@ -404,30 +804,55 @@ public class ElasticsearchClusterRunner implements Closeable {
             settingsBuilder.build(id, builder);
         }
 
+        if (cpuBudget > 0) {
+            applyCpuBudget(builder, cpuBudget, numOfNode);
+        }
+        if (TRANSPORT_MODE_TUNED.equals(transportMode)) {
+            applyTunedTransportSettings(builder);
+        }
+        if (ioThrottle != null) {
+            applyIoThrottleSettings(builder, id, ioThrottle);
+            if (!IndexModule.isBuiltinType(indexStoreType)) {
+                throw new ClusterRunnerException("-ioThrottle cannot wrap -indexStoreType " + indexStoreType
+                        + ". Use fs, niofs, mmapfs or hybridfs.");
+            }
+            putIfAbsent(builder, ThrottledStorePlugin.DELEGATE_STORE_TYPE_SETTING.getKey(), indexStoreType);
+            putIfAbsent(builder, "index.store.type", ThrottledStorePlugin.STORE_TYPE);
+        }
+        if (SETTINGS_PRESET_DENSE.equals(settingsPreset)) {
+            applyDenseSettings(builder, numOfNode);
+        }
+
+        final Path repoPath = Paths.get(basePath, REPO_DIR);
+        createDir(repoPath);
+        putIfAbsent(builder, "path.repo", repoPath.toAbsolutePath().toString());
         putIfAbsent(builder, "path.home", homePath.toAbsolutePath().toString());
-        putIfAbsent(builder, "path.data", dataPath.toAbsolutePath().toString());
+        if (!builder.keys().contains("path.data")) {
+            if (dataPathList.size() == 1) {
+                builder.put("path.data", dataPathList.get(0).toAbsolutePath().toString());
+            } else {
+                builder.putList("path.data", dataPathList.stream().map(p -> p.toAbsolutePath().toString()).collect(Collectors.toList()));
+            }
+        }
         putIfAbsent(builder, "path.logs", logsPath.toAbsolutePath().toString());
 
-        final Path esConfPath = confPath.resolve(ELASTICSEARCH_YAML);
-        if (!esConfPath.toFile().exists()) {
-            try (InputStream is =
-                    Thread.currentThread().getContextClassLoader().getResourceAsStream(CONFIG_DIR + "/" + ELASTICSEARCH_YAML)) {
-                Files.copy(is, esConfPath, StandardCopyOption.REPLACE_EXISTING);
-            } catch (final IOException e) {
-                throw new ClusterRunnerException("Could not create: " + esConfPath, e);
+        if (RESET_MODE_FILES.equals(resetMode)) {
+            // shard data and the persisted cluster metadata have to be removed together
+            for (final String path : builder.build().getAsList("path.data")) {
+                final Path nodeDataPath = Paths.get(path);
+                for (final String name : new String[] { "indices", "_state" }) {
+                    final Path target = nodeDataPath.resolve(name);
+                    if (Files.exists(target)) {
+                        print("Deleting " + target);
+                        deleteDir(target);
+                    }
+                }
             }
         }
 
+        writeConfig(confPath.resolve(ELASTICSEARCH_YAML), ELASTICSEARCH_YAML);
         if (!disableESLogger) {
-            final Path logConfPath = confPath.resolve(LOG4J2_PROPERTIES);
-            if (!logConfPath.toFile().exists()) {
-                try (InputStream is =
-                        Thread.currentThread().getContextClassLoader().getResourceAsStream(CONFIG_DIR + "/" + LOG4J2_PROPERTIES)) {
-                    Files.copy(is, logConfPath, StandardCopyOption.REPLACE_EXISTING);
-                } catch (final IOException e) {
-                    throw new ClusterRunnerException("Could not create: " + logConfPath, e);
-                }
-            }
+            writeConfig(confPath.resolve(LOG4J2_PROPERTIES), LOG4J2_PROPERTIES);
         }
 
         try {
@@ -457,17 +882,19 @@ public class ElasticsearchClusterRunner implements Closeable {
             putIfAbsent(builder, HTTP_PORT, String.valueOf(httpPort));
             putIfAbsent(builder, "index.store.type", indexStoreType);
             if (!builder.keys().contains("node.roles")) {
-                builder.putList("node.roles", "master", "data");
+                builder.putList("node.roles", Arrays.stream(nodeRoles.split(",")).map(String::trim)
+                        .filter(role -> !role.isEmpty()).collect(Collectors.toList()));
             }
 
             print("Node Name:      " + builder.get(NODE_NAME));
             print("HTTP Port:      " + builder.get(HTTP_PORT));
-            print("Data Directory: " + dataPath);
+            print("Data Directory: " + builder.build().getAsList("path.data"));
             print("Log Directory:  " + logsPath);
 
             final Settings settings = builder.build();
             final Environment environment =
                     InternalSettingsPreparer.prepareEnvironment(settings, Collections.emptyMap(), confPath, () -> nodeName);
+            prepareEvent.commit();
             if (!disableESLogger) {
                 LogConfigurator.registerErrorListener();
                 final String envNodeName = Node.NODE_NAME_SETTING
@@ -485,17 +912,104 @@ public class ElasticsearchClusterRunner implements Closeable {
             createDir(environment.modulesFile());
             createDir(environment.pluginsFile());
 
+            final FlightRecorderSession.NodeStartupEvent constructEvent = newNodeStartupEvent(nodeName, "construct");
             final Node node = new ClusterRunnerNode(environment,
                     s -> new ClusterRunnerPluginsService(s, environment,
                             pluginList));
+            constructEvent.commit();
+            final FlightRecorderSession.NodeStartupEvent startEvent = newNodeStartupEvent(nodeName, "start");
             node.start();
+            startEvent.commit();
             nodeList.add(node);
             envList.add(environment);
         } catch (final Exception e) {
+            dumpFlightRecording("failure");
             throw new ClusterRunnerException("Failed to start node " + id, e);
         }
     }
 
+    private static FlightRecorderSession.NodeStartupEvent newNodeStartupEvent(final String nodeName, final String phase) {
+        final FlightRecorderSession.NodeStartupEvent event = new FlightRecorderSession.NodeStartupEvent();
+        event.nodeName = nodeName;
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Return data paths of a node.
+     * Paths are spread over mount points of -dataPaths (or -dataPath), starting from a different
+     * mount point for each node, and each node has its own directory on a mount point.
+     *
+     * @param id a node id starting from 1
+     * @param homePath a home directory of the node
+     * @return data paths
+     */
+    protected List<Path> getDataPaths(final int id, final Path homePath) {
+        final String nodeDirName = homePath.getFileName().toString();
+        String[] mounts = new String[0];
+        if (dataPaths != null) {
+            mounts = Arrays.stream(dataPaths.split(",")).map(String::trim).filter(s -> s.length() > 0).toArray(String[]::new);
+        } else if (dataPath != null) {
+            mounts = new String[] { dataPath };
+        }
+        final int count = Math.max(1, numOfDataPaths);
+        final List<Path> paths = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final Path nodePath = mounts.length == 0 ? homePath : Paths.get(mounts[(id - 1 + i) % mounts.length], nodeDirName);
+            if (count == 1) {
+                paths.add(mounts.length == 0 ? nodePath.resolve(DATA_DIR) : nodePath);
+            } else {
+                paths.add(nodePath.resolve(DATA_DIR + "_" + i));
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Write a bundled config file if it does not exist.
+     * An existing file is updated only if the runner wrote it, it is not modified since then,
+     * and the bundled template has changed. The hash of a written template is kept in
+     * "." + name + CONFIG_HASH_SUFFIX next to the file, so files provided by a user are never overwritten.
+     *
+     * @param path a config file
+     * @param name a name of a bundled template
+     */
+    protected void writeConfig(final Path path, final String name) {
+        final byte[] template;
+        try (InputStream is = Thread.currentThread().getContextClassLoader().getResourceAsStream(CONFIG_DIR + "/" + name)) {
+            if (is == null) {
+                throw new ClusterRunnerException(CONFIG_DIR + "/" + name + " is not found.");
+            }
+            template = is.readAllBytes();
+        } catch (final IOException e) {
+            throw new ClusterRunnerException("Could not read: " + name, e);
+        }
+        final String templateHash = getHash(template);
+        final Path hashPath = path.resolveSibling("." + name + CONFIG_HASH_SUFFIX);
+        try {
+            if (path.toFile().exists()) {
+                final String writtenHash = hashPath.toFile().exists() ? Files.readString(hashPath, StandardCharsets.UTF_8).trim() : null;
+                if (writtenHash == null || writtenHash.equals(templateHash) || !writtenHash.equals(getHash(Files.readAllBytes(path)))) {
+                    return;
+                }
+                print("Updating " + path);
+            }
+            Files.write(path, template);
+            Files.writeString(hashPath, templateHash, StandardCharsets.UTF_8);
+        } catch (final IOException e) {
+            throw new ClusterRunnerException("Could not create: " + path, e);
+        }
+    }
+
+    protected static String getHash(final byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new ClusterRunnerException("Failed to create a hash.", e);
+        }
+    }
+
     protected int getAvailableHttpPort(final int number) {
         int httpPort = baseHttpPort + number;
         if (maxHttpPort < 0) {
@@ -514,6 +1028,188 @@ public class ElasticsearchClusterRunner implements Closeable {
         throw new ClusterRunnerException("The http port " + httpPort + " is unavailable.");
     }
 
+    /**
+     * Size processors, buffers, caches and circuit breakers for nodes sharing one JVM.
+     * Each node gets an equal share of Runtime.maxMemory() and available processors,
+     * and values set by a settings builder callback are kept.
+     *
+     * @param builder node settings
+     * @param numOfNodes the number of nodes in the JVM
+     */
+    protected void applyDenseSettings(final Settings.Builder builder, final int numOfNodes) {
+        final long heapShare = Runtime.getRuntime().maxMemory() / numOfNodes;
+        final int processors = Math.max(1, Runtime.getRuntime().availableProcessors() / numOfNodes);
+        // thread pool sizes are derived from node.processors
+        putIfAbsent(builder, "node.processors", String.valueOf(processors));
+        putIfAbsent(builder, "indices.memory.index_buffer_size", heapShare / 10 + "b");
+        putIfAbsent(builder, "indices.queries.cache.size", heapShare / 20 + "b");
+        putIfAbsent(builder, "indices.requests.cache.size", heapShare / 100 + "b");
+        putIfAbsent(builder, "indices.fielddata.cache.size", heapShare / 5 + "b");
+        // the real memory breaker measures the whole JVM heap, which all nodes share
+        putIfAbsent(builder, "indices.breaker.total.use_real_memory", "false");
+        putIfAbsent(builder, "indices.breaker.total.limit", heapShare * 7 / 10 + "b");
+        putIfAbsent(builder, "indices.breaker.fielddata.limit", heapShare * 3 / 10 + "b");
+        putIfAbsent(builder, "indices.breaker.request.limit", heapShare * 4 / 10 + "b");
+        putIfAbsent(builder, "network.breaker.inflight_requests.limit", heapShare + "b");
+    }
+
+    /**
+     * Cap executors of each node so that all nodes together fit in a processor budget.
+     * Nodes cannot share executors, so each node gets budget / numOfNodes processors
+     * and the generic, management, search and write pools are sized from it.
+     *
+     * @param builder node settings
+     * @param budget the number of processors for all nodes
+     * @param numOfNodes the number of nodes in the JVM
+     */
+    protected void applyCpuBudget(final Settings.Builder builder, final int budget, final int numOfNodes) {
+        final int processors = Math.max(1, budget / numOfNodes);
+        putIfAbsent(builder, "node.processors", String.valueOf(processors));
+        putIfAbsent(builder, "thread_pool.generic.max", String.valueOf(Math.max(4, processors * 2)));
+        putIfAbsent(builder, "thread_pool.management.max", String.valueOf(Math.min(5, processors + 1)));
+        putIfAbsent(builder, "thread_pool.search.size", String.valueOf(processors + 1));
+        putIfAbsent(builder, "thread_pool.write.size", String.valueOf(processors));
+    }
+
+    /**
+     * Tune the transport for nodes which run in one JVM on the same host.
+     * Messages still go through Netty, but with fewer connections, no compression,
+     * faster peer discovery and unthrottled recoveries.
+     *
+     * @param builder node settings
+     */
+    protected void applyTunedTransportSettings(final Settings.Builder builder) {
+        putIfAbsent(builder, "transport.compress", "false");
+        putIfAbsent(builder, "transport.connections_per_node.recovery", "1");
+        putIfAbsent(builder, "transport.connections_per_node.bulk", "1");
+        putIfAbsent(builder, "transport.connections_per_node.reg", "2");
+        putIfAbsent(builder, "transport.connections_per_node.state", "1");
+        putIfAbsent(builder, "transport.connections_per_node.ping", "1");
+        putIfAbsent(builder, "discovery.find_peers_interval", "100ms");
+        putIfAbsent(builder, "indices.recovery.max_bytes_per_sec", "0");
+        putIfAbsent(builder, "indices.recovery.max_concurrent_file_chunks", "8");
+    }
+
+    /**
+     * Drop all transport requests between the given nodes and the other nodes.
+     *
+     * @param nodeNames node names of one side of a partition
+     */
+    public void partition(final String... nodeNames) {
+        final NetworkFaults faults = getNetworkFaults();
+        final String cluster = node().settings().get("cluster.name");
+        final List<String> side = Arrays.asList(nodeNames);
+        for (final Node node : nodeList) {
+            final String name = node.settings().get(NODE_NAME);
+            if (!side.contains(name)) {
+                for (final String nodeName : nodeNames) {
+                    faults.partition(nodeName, cluster, name);
+                    faults.partition(name, cluster, nodeName);
+                }
+            }
+        }
+        print("Partitioned " + side + " from other nodes.");
+    }
+
+    /**
+     * Delay transport requests from a node to another node.
+     *
+     * @param from a sender node name
+     * @param to a receiver node name
+     * @param millis a delay in milliseconds
+     */
+    public void delay(final String from, final String to, final long millis) {
+        getNetworkFaults().delay(from, node().settings().get("cluster.name"), to, millis);
+    }
+
+    /**
+     * Drop transport requests from a node to another node at a rate.
+     *
+     * @param from a sender node name
+     * @param to a receiver node name
+     * @param probability a drop rate between 0 and 1
+     */
+    public void drop(final String from, final String to, final double probability) {
+        getNetworkFaults().drop(from, node().settings().get("cluster.name"), to, probability);
+    }
+
+    /**
+     * Remove all network faults.
+     */
+    public void heal() {
+        getNetworkFaults().heal();
+        print("Healed network faults.");
+    }
+
+    /**
+     * Put runner.io.* settings for a node from a throttle spec such as
+     * "2:read=20mb,write=10mb,iops=100,latency=5ms;3:latency=20ms".
+     *
+     * @param builder node settings
+     * @param id a node id starting from 1
+     * @param spec limits per node id
+     */
+    protected void applyIoThrottleSettings(final Settings.Builder builder, final int id, final String spec) {
+        for (final String nodeSpec : spec.split(";")) {
+            final int pos = nodeSpec.indexOf(':');
+            if (pos == -1) {
+                throw new ClusterRunnerException("Invalid I/O throttle: " + nodeSpec);
+            }
+            if (!String.valueOf(id).equals(nodeSpec.substring(0, pos).trim())) {
+                continue;
+            }
+            for (final String value : nodeSpec.substring(pos + 1).split(",")) {
+                final String[] pair = value.split("=", 2);
+                if (pair.length != 2) {
+                    throw new ClusterRunnerException("Invalid I/O throttle: " + value);
+                }
+                final String limit = pair[1].trim();
+                switch (pair[0].trim()) {
+                case "read":
+                    putIfAbsent(builder, ThrottledStorePlugin.READ_BYTES_PER_SEC_SETTING.getKey(), limit);
+                    break;
+                case "write":
+                    putIfAbsent(builder, ThrottledStorePlugin.WRITE_BYTES_PER_SEC_SETTING.getKey(), limit);
+                    break;
+                case "iops":
+                    putIfAbsent(builder, ThrottledStorePlugin.MAX_IOPS_SETTING.getKey(), limit);
+                    break;
+                case "latency":
+                    putIfAbsent(builder, ThrottledStorePlugin.LATENCY_SETTING.getKey(), limit);
+                    break;
+                default:
+                    throw new ClusterRunnerException("Unknown I/O throttle: " + value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return I/O done through the "throttled" store type on a node.
+     *
+     * @param nodeName a node name
+     * @return I/O statistics
+     */
+    public IoStats getIoStats(final String nodeName) {
+        return IoStats.of(node().settings().get("cluster.name"), nodeName);
+    }
+
+    protected NetworkFaults getNetworkFaults() {
+        if (!networkFaults) {
+            throw new ClusterRunnerException("Network faults are not enabled. Build a cluster with -networkFaults.");
+        }
+        return NetworkFaults.of(node().settings().get("cluster.name"));
+    }
+
+    /**
+     * Capture threads, context switches and CPU time of this process.
+     *
+     * @return CPU usage
+     */
+    public CpuUsageSnapshot captureCpuUsage() {
+        return CpuUsageSnapshot.capture();
+    }
+
     protected void putIfAbsent(final Settings.Builder builder, final String key, final String value) {
         if (builder.get(key) == null && value != null) {
             builder.put(key, value);
@@ -672,7 +1368,11 @@ public class ElasticsearchClusterRunner implements Closeable {
      * @return client
      */
     public Client client() {
-        return node().client();
+        final Node node = node();
+        if (flightRecorderSession != null && flightRecorderSession.isRecordActions()) {
+            return runnerClients.computeIfAbsent(node, n -> new RunnerClient(n.client(), n.settings().get(NODE_NAME)));
+        }
+        return node.client();
     }
 
     /**
@@ -691,19 +1391,7 @@ public class ElasticsearchClusterRunner implements Closeable {
      * @return cluster health status
      */
     public ClusterHealthStatus ensureGreen(final String... indices) {
-        final ClusterHealthResponse actionGet = client().admin().cluster()
-                .prepareHealth(indices).setWaitForGreenStatus()
-                .setWaitForEvents(Priority.LANGUID)
-                .setWaitForNoRelocatingShards(true).execute().actionGet();
-        if (actionGet.isTimedOut()) {
-            onFailure(
-                    "ensureGreen timed out, cluster state:\n" + client()
-                            .admin().cluster().prepareState().get().getState()
-                            + "\n"
-                            + getClusterPendingTasks(client()),
-                    actionGet);
-        }
-        return actionGet.getStatus();
+        return waitForHealth("ensureGreen", ClusterHealthStatus.GREEN, indices);
     }
 
     /**
@@ -713,61 +1401,178 @@ public class ElasticsearchClusterRunner implements Closeable {
      * @return cluster health status
      */
     public ClusterHealthStatus ensureYellow(final String... indices) {
-        final ClusterHealthResponse actionGet = client().admin().cluster()
-                .prepareHealth(indices).setWaitForYellowStatus()
-                .setWaitForNoRelocatingShards(true)
-                .setWaitForEvents(Priority.LANGUID).execute().actionGet();
-        if (actionGet.isTimedOut()) {
-            onFailure(
-                    "ensureYellow timed out, cluster state:\n" + "\n" + client()
-                            .admin().cluster().prepareState().get().getState()
-                            + "\n"
-                            + getClusterPendingTasks(client()),
-                    actionGet);
-        }
-        return actionGet.getStatus();
+        return waitForHealth("ensureYellow", ClusterHealthStatus.YELLOW, indices);
     }
 
     public ClusterHealthStatus waitForRelocation() {
-        final ClusterHealthResponse actionGet = client().admin().cluster()
-                .prepareHealth().setWaitForNoRelocatingShards(true).execute()
-                .actionGet();
-        if (actionGet.isTimedOut()) {
-            onFailure(
-                    "waitForRelocation timed out, cluster state:\n" + "\n"
-                            + client().admin().cluster().prepareState().get()
-                                    .getState()
-                            + "\n"
-                            + getClusterPendingTasks(client()),
-                    actionGet);
-        }
-        return actionGet.getStatus();
+        return waitForHealth("waitForRelocation", null);
     }
 
-    public static PendingClusterTasksResponse getClusterPendingTasks(
-            Client client) {
-        try {
-            return client
-                    .execute(TransportPendingClusterTasksAction.TYPE,
-                            new PendingClusterTasksRequest())
-                    .get(10, TimeUnit.SECONDS);
-        } catch (final Exception e) {
-            throw new ClusterRunnerException("Failed to get the cluster pending tasks.", e);
+    protected ClusterHealthStatus waitForHealth(final String name, final ClusterHealthStatus status, final String... indices) {
+        final Node node = node();
+        final ClusterHealthWaiter waiter = new ClusterHealthWaiter(node.injector().getInstance(ClusterService.class), node.client(),
+                (int) nodeList.stream().filter(n -> !n.isClosed()).count());
+        final FlightRecorderSession.HealthWaitEvent event = new FlightRecorderSession.HealthWaitEvent();
+        event.begin();
+        final ClusterHealthWaiter.Result result;
+        try (RunnerCall call = startCall(name, indices)) {
+            result = waiter.await(status, true, healthTimeout, indices);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.nodeName = node.settings().get(NODE_NAME);
+            event.expectedStatus = status == null ? null : status.name();
+            event.status = result.getStatus() == null ? null : result.getStatus().name();
+            event.indices = String.join(",", indices);
+            event.timedOut = result.isTimedOut();
+            event.commit();
         }
+        if (!result.isSuccess()) {
+            onFailure(name + " " + result.getFailure(), null);
+        }
+        return result.getStatus();
     }
 
-    public BroadcastResponse flush() {
-        return flush(true);
+    public void setHealthTimeout(final TimeValue healthTimeout) {
+        this.healthTimeout = healthTimeout;
     }
 
-    public BroadcastResponse flush(final boolean force) {
-        return flush(builder -> builder.setWaitIfOngoing(true).setForce(force));
+    /**
+     * Run synthetic index/search/aggregation/script requests on all nodes until latency levels off.
+     *
+     * @return warmup result
+     */
+    public WarmupResult warmup() {
+        return warmup(10000, 200, 0.05);
     }
 
-    public BroadcastResponse flush(final BuilderCallback<FlushRequestBuilder> builder) {
-        waitForRelocation();
-        final BroadcastResponse actionGet = builder.apply(client().admin().indices().prepareFlush()).execute().actionGet();
-        final ShardOperationFailedException[] shardFailures = actionGet.getShardFailures();
+    /**
+     * Run synthetic index/search/aggregation/script requests on all nodes until latency levels off.
+     * A steady state is reached when the mean latency of the last rounds
+     * differs from the previous rounds by less than the tolerance.
+     *
+     * @param numOfDocs the number of documents for a warmup index
+     * @param maxRounds the max number of rounds
+     * @param tolerance relative latency change to detect a steady state
+     * @return warmup result
+     */
+    public WarmupResult warmup(final int numOfDocs, final int maxRounds, final double tolerance) {
+        try (RunnerCall call = startCall("warmup")) {
+            final long startTime = System.nanoTime();
+            final List<Node> nodes = nodeList.stream().filter(node -> !node.isClosed()).collect(Collectors.toList());
+            final String index = WARMUP_INDEX;
+            createIndex(index, builder -> builder
+                    .setSettings(builder().put("index.number_of_shards", nodes.size()).put("index.number_of_replicas", 0))
+                    .setMapping("tag", "type=keyword", "value", "type=long", "msg", "type=text", "@timestamp", "type=date"));
+            ensureGreen(index);
+
+            final String[] tags = new String[] { "red", "green", "blue", "yellow", "black", "white" };
+            int docId = 0;
+            while (docId < numOfDocs) {
+                final BulkRequestBuilder bulkBuilder = nodes.get(docId % nodes.size()).client().prepareBulk();
+                for (int i = 0; i < 1000 && docId < numOfDocs; i++, docId++) {
+                    bulkBuilder.add(new IndexRequest(index).source("tag", tags[docId % tags.length], "value", docId, "msg",
+                            "warmup message " + docId, "@timestamp", 946684800000L + docId * 1000L));
+                }
+                final BulkResponse bulkResponse = bulkBuilder.execute().actionGet();
+                if (bulkResponse.hasFailures()) {
+                    onFailure(bulkResponse.buildFailureMessage(), bulkResponse);
+                }
+            }
+            refresh(builder -> builder.setIndices(index));
+
+            final int window = 5;
+            final double[] latencies = new double[maxRounds];
+            int rounds = 0;
+            boolean steadyState = false;
+            try {
+                while (rounds < maxRounds && !steadyState) {
+                    final long roundStart = System.nanoTime();
+                    for (final Node node : nodes) {
+                        final Client client = node.client();
+                        final SearchResponse queryResponse = client.prepareSearch(index)
+                                .setQuery(QueryBuilders.matchQuery("msg", "message " + rounds)).setSize(10).execute().actionGet();
+                        queryResponse.decRef();
+                        final SearchResponse aggResponse = client.prepareSearch(index).setSize(0)
+                                .addAggregation(AggregationBuilders.terms("tags").field("tag")
+                                        .subAggregation(AggregationBuilders.avg("avg_value").field("value")))
+                                .addAggregation(AggregationBuilders.dateHistogram("timeline").field("@timestamp")
+                                        .fixedInterval(DateHistogramInterval.HOUR))
+                                .execute().actionGet();
+                        aggResponse.decRef();
+                        final SearchResponse scriptResponse = client.prepareSearch(index)
+                                .setQuery(QueryBuilders.scriptScoreQuery(QueryBuilders.matchAllQuery(), new Script(ScriptType.INLINE,
+                                        Script.DEFAULT_SCRIPT_LANG, "doc['value'].value * params.factor + _score", Map.of("factor", 2))))
+                                .setSize(10).execute().actionGet();
+                        scriptResponse.decRef();
+                        final BulkRequestBuilder bulkBuilder = client.prepareBulk();
+                        for (int i = 0; i < 10; i++) {
+                            bulkBuilder.add(new IndexRequest(index).source("tag", tags[i % tags.length], "value", i, "msg",
+                                    "warmup update " + i, "@timestamp", 946684800000L));
+                        }
+                        bulkBuilder.execute().actionGet();
+                    }
+                    latencies[rounds] = (System.nanoTime() - roundStart) / 1000000.0;
+                    rounds++;
+                    if (rounds >= window * 2) {
+                        final double current = mean(latencies, rounds - window, rounds);
+                        final double previous = mean(latencies, rounds - window * 2, rounds - window);
+                        steadyState = Math.abs(current - previous) <= previous * tolerance;
+                    }
+                }
+            } finally {
+                deleteIndex(index);
+            }
+
+            final WarmupResult result = new WarmupResult(rounds, steadyState, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime),
+                    rounds > 0 ? latencies[0] : 0, rounds > 0 ? latencies[rounds - 1] : 0);
+            if (steadyState) {
+                print("Reached a steady state after " + rounds + " warmup rounds: " + result);
+            } else {
+                print("Did not reach a steady state in " + rounds + " warmup rounds: " + result);
+            }
+            return result;
+        }
+    }
+
+    private static double mean(final double[] values, final int from, final int to) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += values[i];
+        }
+        return sum / (to - from);
+    }
+
+    public static PendingClusterTasksResponse getClusterPendingTasks(
+            Client client) {
+        try {
+            return client
+                    .execute(TransportPendingClusterTasksAction.TYPE,
+                            new PendingClusterTasksRequest())
+                    .get(10, TimeUnit.SECONDS);
+        } catch (final Exception e) {
+            throw new ClusterRunnerException("Failed to get the cluster pending tasks.", e);
+        }
+    }
+
+    public BroadcastResponse flush() {
+        return flush(true);
+    }
+
+    public BroadcastResponse flush(final boolean force) {
+        return flush(builder -> builder.setWaitIfOngoing(true).setForce(force));
+    }
+
+    public BroadcastResponse flush(final BuilderCallback<FlushRequestBuilder> builder) {
+        try (RunnerCall call = startCall("flush")) {
+            return doFlush(builder);
+        }
+    }
+
+    protected BroadcastResponse doFlush(final BuilderCallback<FlushRequestBuilder> builder) {
+        waitForRelocation();
+        final BroadcastResponse actionGet = builder.apply(client().admin().indices().prepareFlush()).execute().actionGet();
+        final ShardOperationFailedException[] shardFailures = actionGet.getShardFailures();
         if (shardFailures != null && shardFailures.length != 0) {
             final StringBuilder buf = new StringBuilder(100);
             for (final ShardOperationFailedException shardFailure : shardFailures) {
@@ -783,6 +1588,12 @@ public class ElasticsearchClusterRunner implements Closeable {
     }
 
     public BroadcastResponse refresh(final BuilderCallback<RefreshRequestBuilder> builder) {
+        try (RunnerCall call = startCall("refresh")) {
+            return doRefresh(builder);
+        }
+    }
+
+    protected BroadcastResponse doRefresh(final BuilderCallback<RefreshRequestBuilder> builder) {
         waitForRelocation();
         final BroadcastResponse actionGet = builder.apply(client().admin().indices().prepareRefresh()).execute().actionGet();
         final ShardOperationFailedException[] shardFailures = actionGet.getShardFailures();
@@ -805,6 +1616,12 @@ public class ElasticsearchClusterRunner implements Closeable {
     }
 
     public BroadcastResponse forceMerge(final BuilderCallback<ForceMergeRequestBuilder> builder) {
+        try (RunnerCall call = startCall("forceMerge")) {
+            return doForceMerge(builder);
+        }
+    }
+
+    protected BroadcastResponse doForceMerge(final BuilderCallback<ForceMergeRequestBuilder> builder) {
         waitForRelocation();
         final BroadcastResponse actionGet = builder.apply(client().admin().indices().prepareForceMerge()).execute().actionGet();
         final ShardOperationFailedException[] shardFailures = actionGet.getShardFailures();
@@ -818,11 +1635,133 @@ public class ElasticsearchClusterRunner implements Closeable {
         return actionGet;
     }
 
+    /**
+     * Refresh indices one by one with bounded concurrency.
+     * Progress is reported per index, since one request covers all shard copies of an index;
+     * per-copy statistics are in {@link IndexOperationResult#getShardResults()}.
+     *
+     * @param concurrency the max number of indices processed at the same time
+     * @param listener a listener notified once per index after all of its shard copies are done, or null
+     * @param indices indices, or empty for all indices
+     * @return results of all indices
+     */
+    public CompletableFuture<List<IndexOperationResult>> refreshIndices(final int concurrency,
+            final Consumer<IndexOperationResult> listener, final String... indices) {
+        return executeIndexOperation("refresh", index -> client().admin().indices().prepareRefresh(index).execute().actionGet(),
+                concurrency, listener, indices);
+    }
+
+    /**
+     * Flush indices one by one with bounded concurrency.
+     * Like {@link #refreshIndices(int, Consumer, String...)}, progress is reported per index.
+     *
+     * @param concurrency the max number of indices processed at the same time
+     * @param listener a listener notified once per index after all of its shard copies are done, or null
+     * @param indices indices, or empty for all indices
+     * @return results of all indices
+     */
+    public CompletableFuture<List<IndexOperationResult>> flushIndices(final int concurrency,
+            final Consumer<IndexOperationResult> listener, final String... indices) {
+        return executeIndexOperation("flush",
+                index -> client().admin().indices().prepareFlush(index).setWaitIfOngoing(true).setForce(true).execute().actionGet(),
+                concurrency, listener, indices);
+    }
+
+    /**
+     * Force-merge indices one by one with bounded concurrency.
+     * Like {@link #refreshIndices(int, Consumer, String...)}, progress is reported per index.
+     *
+     * @param maxNumSegments the max number of segments, or -1 to check if merging is needed
+     * @param concurrency the max number of indices processed at the same time
+     * @param listener a listener notified once per index after all of its shard copies are done, or null
+     * @param indices indices, or empty for all indices
+     * @return results of all indices
+     */
+    public CompletableFuture<List<IndexOperationResult>> forceMergeIndices(final int maxNumSegments, final int concurrency,
+            final Consumer<IndexOperationResult> listener, final String... indices) {
+        return executeIndexOperation("forceMerge", index -> client().admin().indices().prepareForceMerge(index)
+                .setMaxNumSegments(maxNumSegments).setFlush(true).execute().actionGet(), concurrency, listener, indices);
+    }
+
+    protected CompletableFuture<List<IndexOperationResult>> executeIndexOperation(final String operation,
+            final Function<String, BroadcastResponse> function, final int concurrency, final Consumer<IndexOperationResult> listener,
+            final String... indices) {
+        waitForRelocation();
+        final String[] targets = indices == null || indices.length == 0
+                ? client().admin().indices().prepareGetIndex().execute().actionGet().indices()
+                : indices;
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, targets.length)));
+        final List<CompletableFuture<IndexOperationResult>> futures = new ArrayList<>();
+        for (final String index : targets) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                final long startTime = System.nanoTime();
+                final Map<String, ShardStats> before = getShardStats(index);
+                final BroadcastResponse response = function.apply(index);
+                final ShardOperationFailedException[] shardFailures = response.getShardFailures();
+                if (shardFailures != null && shardFailures.length != 0) {
+                    throw new ClusterRunnerException(operation + " failed on " + index + ": " + Arrays.toString(shardFailures), response);
+                }
+                final Map<String, ShardStats> after = getShardStats(index);
+                final List<IndexOperationResult.ShardResult> shardResults = new ArrayList<>();
+                for (final Map.Entry<String, ShardStats> entry : after.entrySet()) {
+                    final ShardStats afterStats = entry.getValue();
+                    final ShardStats beforeStats = before.get(entry.getKey());
+                    final ShardRouting shardRouting = afterStats.getShardRouting();
+                    shardResults.add(new IndexOperationResult.ShardResult(shardRouting.shardId().id(), shardRouting.primary(),
+                            shardRouting.currentNodeId(), beforeStats != null ? beforeStats.getStats().getSegments().getCount() : 0,
+                            afterStats.getStats().getSegments().getCount(),
+                            afterStats.getStats().getMerge().getTotalSizeInBytes()
+                                    - (beforeStats != null ? beforeStats.getStats().getMerge().getTotalSizeInBytes() : 0),
+                            afterStats.getStats().getMerge().getTotalTimeInMillis()
+                                    - (beforeStats != null ? beforeStats.getStats().getMerge().getTotalTimeInMillis() : 0)));
+                }
+                final IndexOperationResult result = new IndexOperationResult(operation, index,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), shardResults);
+                if (listener != null) {
+                    listener.accept(result);
+                }
+                return result;
+            }, executor));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]))
+                .thenApply(v -> futures.stream().map(CompletableFuture::join).collect(Collectors.toList()))
+                .whenComplete((results, e) -> executor.shutdown());
+    }
+
+    /**
+     * Capture segment, store, translog, merge, refresh and search statistics of indices.
+     *
+     * @param indices indices, or empty for all indices
+     * @return snapshot
+     */
+    public IndexStatsSnapshot captureIndexStats(final String... indices) {
+        try (RunnerCall call = startCall("captureIndexStats", indices)) {
+            return IndexStatsSnapshot.of(client().admin().indices().prepareStats(indices).all().execute().actionGet());
+        }
+    }
+
+    protected Map<String, ShardStats> getShardStats(final String index) {
+        final IndicesStatsResponse response =
+                client().admin().indices().prepareStats(index).clear().setSegments(true).setMerge(true).execute().actionGet();
+        final Map<String, ShardStats> statsMap = new LinkedHashMap<>();
+        for (final ShardStats shardStats : response.getShards()) {
+            final ShardRouting shardRouting = shardStats.getShardRouting();
+            statsMap.put(shardRouting.shardId().id() + "/" + shardRouting.primary() + "/" + shardRouting.currentNodeId(), shardStats);
+        }
+        return statsMap;
+    }
+
     public OpenIndexResponse openIndex(final String index) {
         return openIndex(index, builder -> builder);
     }
 
     public OpenIndexResponse openIndex(final String index, final BuilderCallback<OpenIndexRequestBuilder> builder) {
+        try (RunnerCall call = startCall("openIndex", index)) {
+            return doOpenIndex(index, builder);
+        }
+    }
+
+    protected OpenIndexResponse doOpenIndex(final String index, final BuilderCallback<OpenIndexRequestBuilder> builder) {
         final OpenIndexResponse actionGet = builder.apply(client().admin().indices().prepareOpen(index)).execute().actionGet();
         if (!actionGet.isAcknowledged()) {
             onFailure("Failed to open " + index + ".", actionGet);
@@ -835,6 +1774,12 @@ public class ElasticsearchClusterRunner implements Closeable {
     }
 
     public AcknowledgedResponse closeIndex(final String index, final BuilderCallback<CloseIndexRequestBuilder> builder) {
+        try (RunnerCall call = startCall("closeIndex", index)) {
+            return doCloseIndex(index, builder);
+        }
+    }
+
+    protected AcknowledgedResponse doCloseIndex(final String index, final BuilderCallback<CloseIndexRequestBuilder> builder) {
         final AcknowledgedResponse actionGet = builder.apply(client().admin().indices().prepareClose(index)).execute().actionGet();
         if (!actionGet.isAcknowledged()) {
             onFailure("Failed to close " + index + ".", actionGet);
@@ -847,6 +1792,12 @@ public class ElasticsearchClusterRunner implements Closeable {
     }
 
     public CreateIndexResponse createIndex(final String index, final BuilderCallback<CreateIndexRequestBuilder> builder) {
+        try (RunnerCall call = startCall("createIndex", index)) {
+            return doCreateIndex(index, builder);
+        }
+    }
+
+    protected CreateIndexResponse doCreateIndex(final String index, final BuilderCallback<CreateIndexRequestBuilder> builder) {
         final CreateIndexResponse actionGet = builder.apply(client().admin().indices().prepareCreate(index)).execute().actionGet();
         if (!actionGet.isAcknowledged()) {
             onFailure("Failed to create " + index + ".", actionGet);
@@ -854,12 +1805,78 @@ public class ElasticsearchClusterRunner implements Closeable {
         return actionGet;
     }
 
+    /**
+     * Create an index with shard and replica counts derived from the number of data nodes and processors.
+     * Settings given explicitly are not overwritten.
+     *
+     * @param index an index name
+     * @param settings index settings, or null
+     * @return create index response
+     */
+    public CreateIndexResponse createBalancedIndex(final String index, final Settings settings) {
+        try (RunnerCall call = startCall("createBalancedIndex", index)) {
+            final ClusterState state = client().admin().cluster().prepareState().execute().actionGet().getState();
+            final int numOfDataNodes = Math.max(1, state.nodes().getDataNodes().size());
+            return createIndex(index, getBalancedIndexSettings(settings, numOfDataNodes).build());
+        }
+    }
+
+    /**
+     * Create an index whose shards are allocated only to the given runner nodes,
+     * with the same number of shard copies on each node.
+     *
+     * @param index an index name
+     * @param settings index settings, or null
+     * @param nodeIndices indices of runner nodes
+     * @return create index response
+     */
+    public CreateIndexResponse createIndexOnNodes(final String index, final Settings settings, final int... nodeIndices) {
+        try (RunnerCall call = startCall("createIndexOnNodes", index)) {
+            if (nodeIndices == null || nodeIndices.length == 0) {
+                throw new ClusterRunnerException("No node is specified for " + index + ".");
+            }
+            final List<String> nodeNames = new ArrayList<>();
+            for (final int nodeIndex : nodeIndices) {
+                final Node node = getNode(nodeIndex);
+                if (node == null) {
+                    throw new ClusterRunnerException("Node " + nodeIndex + " is not found.");
+                }
+                nodeNames.add(node.settings().get(NODE_NAME));
+            }
+            final Settings.Builder builder = getBalancedIndexSettings(settings, nodeNames.size());
+            builder.put("index.routing.allocation.include._name", String.join(",", nodeNames));
+            return createIndex(index, builder.build());
+        }
+    }
+
+    protected Settings.Builder getBalancedIndexSettings(final Settings settings, final int numOfNodes) {
+        final Settings.Builder builder = builder();
+        if (settings != null) {
+            builder.put(settings);
+        }
+        final int shardsPerNode = Math.max(1, Runtime.getRuntime().availableProcessors() / numOfNodes);
+        putIfAbsent(builder, "index.number_of_shards", String.valueOf(numOfNodes * shardsPerNode));
+        putIfAbsent(builder, "index.number_of_replicas", String.valueOf(Math.min(1, numOfNodes - 1)));
+        final int numOfShards = Integer.parseInt(builder.get("index.number_of_shards"));
+        final int numOfReplicas = Integer.parseInt(builder.get("index.number_of_replicas"));
+        final int totalShards = numOfShards * (numOfReplicas + 1);
+        putIfAbsent(builder, "index.routing.allocation.total_shards_per_node", String.valueOf((totalShards + numOfNodes - 1) / numOfNodes));
+        return builder;
+    }
+
     public boolean indexExists(final String index) {
         return indexExists(index, builder -> builder);
     }
 
     public boolean indexExists(final String index,
             final BuilderCallback<GetIndexRequestBuilder> builder) {
+        try (RunnerCall call = startCall("indexExists", index)) {
+            return doIndexExists(index, builder);
+        }
+    }
+
+    protected boolean doIndexExists(final String index,
+            final BuilderCallback<GetIndexRequestBuilder> builder) {
         try {
             final GetIndexResponse actionGet = builder.apply(client().admin()
                     .indices().prepareGetIndex().setIndices(index)).execute()
@@ -875,6 +1892,12 @@ public class ElasticsearchClusterRunner implements Closeable {
     }
 
     public AcknowledgedResponse deleteIndex(final String index, final BuilderCallback<DeleteIndexRequestBuilder> builder) {
+        try (RunnerCall call = startCall("deleteIndex", index)) {
+            return doDeleteIndex(index, builder);
+        }
+    }
+
+    protected AcknowledgedResponse doDeleteIndex(final String index, final BuilderCallback<DeleteIndexRequestBuilder> builder) {
         final AcknowledgedResponse actionGet = builder.apply(client().admin().indices().prepareDelete(index)).execute().actionGet();
         if (!actionGet.isAcknowledged()) {
             onFailure("Failed to create " + index + ".", actionGet);
@@ -882,6 +1905,647 @@ public class ElasticsearchClusterRunner implements Closeable {
         return actionGet;
     }
 
+    /**
+     * Delete all indices except system indices and backing indices of data streams.
+     *
+     * @return the number of deleted indices
+     */
+    public int wipeIndices() {
+        try (RunnerCall call = startCall("wipeIndices")) {
+            final long startTime = System.nanoTime();
+            final ClusterState state = client().admin().cluster().prepareState().execute().actionGet().getState();
+            final String[] indices = state.metadata().indices().values().stream()
+                    .filter(indexMetadata -> !indexMetadata.isSystem())
+                    .map(indexMetadata -> indexMetadata.getIndex().getName())
+                    .filter(name -> state.metadata().getIndicesLookup().get(name).getParentDataStream() == null)
+                    .toArray(n -> new String[n]);
+            if (indices.length > 0) {
+                final AcknowledgedResponse actionGet = client().admin().indices().prepareDelete(indices).execute().actionGet();
+                if (!actionGet.isAcknowledged()) {
+                    onFailure("Failed to delete " + String.join(",", indices) + ".", actionGet);
+                }
+            }
+            print("Wiped " + indices.length + " indices in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + "ms.");
+            return indices.length;
+        }
+    }
+
+    /**
+     * Remove data streams, indices, templates, ingest pipelines, stored scripts
+     * and cluster settings created by tests, and wait for green state.
+     * Templates and pipelines with {@code _meta.managed: true} or a name starting with "." are kept,
+     * as system data streams and indices are.
+     * Index and component templates are deleted by one request each, and legacy templates and pipelines
+     * by one "*" request unless some of them are kept.
+     * Stored scripts have no multi-id delete, so they cost one request per script.
+     */
+    public void reset() {
+        try (RunnerCall call = startCall("reset")) {
+            final long startTime = System.nanoTime();
+            final Metadata metadata = client().admin().cluster().prepareState().execute().actionGet().getState().metadata();
+
+            final String[] dataStreams = metadata.dataStreams().values().stream().filter(dataStream -> !dataStream.isSystem())
+                    .map(DataStream::getName).toArray(n -> new String[n]);
+            if (dataStreams.length > 0) {
+                final AcknowledgedResponse actionGet =
+                        client().execute(DeleteDataStreamAction.INSTANCE, new DeleteDataStreamAction.Request(dataStreams)).actionGet();
+                if (!actionGet.isAcknowledged()) {
+                    onFailure("Failed to delete " + String.join(",", dataStreams) + ".", actionGet);
+                }
+            }
+
+            final int numOfIndices = wipeIndices();
+
+            final String[] indexTemplates = metadata.templatesV2().entrySet().stream()
+                    .filter(e -> !isManaged(e.getKey(), e.getValue().metadata())).map(Map.Entry::getKey).toArray(n -> new String[n]);
+            if (indexTemplates.length > 0) {
+                final AcknowledgedResponse actionGet = client().execute(TransportDeleteComposableIndexTemplateAction.TYPE,
+                        new TransportDeleteComposableIndexTemplateAction.Request(indexTemplates)).actionGet();
+                if (!actionGet.isAcknowledged()) {
+                    onFailure("Failed to delete index templates " + String.join(",", indexTemplates) + ".", actionGet);
+                }
+            }
+            final String[] componentTemplates = metadata.componentTemplates().entrySet().stream()
+                    .filter(e -> !isManaged(e.getKey(), e.getValue().metadata())).map(Map.Entry::getKey).toArray(n -> new String[n]);
+            if (componentTemplates.length > 0) {
+                final AcknowledgedResponse actionGet = client().execute(TransportDeleteComponentTemplateAction.TYPE,
+                        new TransportDeleteComponentTemplateAction.Request(componentTemplates)).actionGet();
+                if (!actionGet.isAcknowledged()) {
+                    onFailure("Failed to delete component templates " + String.join(",", componentTemplates) + ".", actionGet);
+                }
+            }
+            final List<String> legacyTemplates =
+                    metadata.templates().keySet().stream().filter(name -> !isManaged(name, null)).collect(Collectors.toList());
+            for (final String name : toDeletePatterns(legacyTemplates, metadata.templates().size())) {
+                final AcknowledgedResponse actionGet = client().admin().indices().prepareDeleteTemplate(name).execute().actionGet();
+                if (!actionGet.isAcknowledged()) {
+                    onFailure("Failed to delete legacy index templates " + name + ".", actionGet);
+                }
+            }
+
+            final IngestMetadata ingestMetadata = metadata.custom(IngestMetadata.TYPE);
+            if (ingestMetadata != null) {
+                final List<String> pipelines = ingestMetadata.getPipelines().values().stream()
+                        .filter(pipeline -> !isManaged(pipeline.getId(), getMeta(pipeline.getConfigAsMap())))
+                        .map(PipelineConfiguration::getId).collect(Collectors.toList());
+                for (final String id : toDeletePatterns(pipelines, ingestMetadata.getPipelines().size())) {
+                    final AcknowledgedResponse actionGet = client().admin().cluster().prepareDeletePipeline(id).execute().actionGet();
+                    if (!actionGet.isAcknowledged()) {
+                        onFailure("Failed to delete pipelines " + id + ".", actionGet);
+                    }
+                }
+            }
+
+            final ScriptMetadata scriptMetadata = metadata.custom(ScriptMetadata.TYPE);
+            if (scriptMetadata != null) {
+                for (final String id : scriptMetadata.getStoredScripts().keySet()) {
+                    final AcknowledgedResponse actionGet = client().admin().cluster().prepareDeleteStoredScript(id).execute().actionGet();
+                    if (!actionGet.isAcknowledged()) {
+                        onFailure("Failed to delete a stored script " + id + ".", actionGet);
+                    }
+                }
+            }
+
+            if (!metadata.persistentSettings().isEmpty() || !metadata.transientSettings().isEmpty()) {
+                final Settings.Builder persistentSettings = builder();
+                metadata.persistentSettings().keySet().forEach(persistentSettings::putNull);
+                final Settings.Builder transientSettings = builder();
+                metadata.transientSettings().keySet().forEach(transientSettings::putNull);
+                final ClusterUpdateSettingsResponse actionGet = client().admin().cluster().prepareUpdateSettings()
+                        .setPersistentSettings(persistentSettings).setTransientSettings(transientSettings).execute().actionGet();
+                if (!actionGet.isAcknowledged()) {
+                    onFailure("Failed to reset cluster settings.", actionGet);
+                }
+            }
+
+            ensureGreen();
+            print("Reset " + numOfIndices + " indices and " + dataStreams.length + " data streams in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + "ms.");
+        }
+    }
+
+    private static boolean isManaged(final String name, final Map<String, Object> meta) {
+        return name.startsWith(".") || meta != null && Boolean.TRUE.equals(meta.get("managed"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getMeta(final Map<String, Object> source) {
+        final Object meta = source.get("_meta");
+        return meta instanceof Map ? (Map<String, Object>) meta : null;
+    }
+
+    private static List<String> toDeletePatterns(final List<String> names, final int total) {
+        if (names.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return names.size() == total ? Collections.singletonList("*") : names;
+    }
+
+    /**
+     * Register a shared filesystem repository under path.repo.
+     *
+     * @param name a repository name, which is also used as a location
+     */
+    public void createFsRepository(final String name) {
+        createFsRepository(name, Settings.EMPTY);
+    }
+
+    /**
+     * Register a shared filesystem repository under path.repo.
+     *
+     * @param name a repository name, which is also used as a location
+     * @param settings repository settings, such as compress or max_snapshot_bytes_per_sec
+     */
+    public void createFsRepository(final String name, final Settings settings) {
+        try (RunnerCall call = startCall("createFsRepository")) {
+            final AcknowledgedResponse actionGet = client().admin().cluster().preparePutRepository(name).setType("fs")
+                    .setSettings(builder().put(settings).put("location", name)).execute().actionGet();
+            if (!actionGet.isAcknowledged()) {
+                onFailure("Failed to create a repository " + name + ".", actionGet);
+            }
+        }
+    }
+
+    /**
+     * Take a snapshot and wait for it.
+     *
+     * @param repository a repository name
+     * @param snapshot a snapshot name
+     * @param indices indices to snapshot, or all indices if empty
+     * @return incremental bytes and times per shard
+     */
+    public SnapshotResult snapshot(final String repository, final String snapshot, final String... indices) {
+        try (RunnerCall call = startCall("snapshot", indices)) {
+            final CreateSnapshotRequestBuilder builder = client().admin().cluster().prepareCreateSnapshot(repository, snapshot)
+                    .setIncludeGlobalState(false).setWaitForCompletion(true);
+            if (indices.length > 0) {
+                builder.setIndices(indices);
+            }
+            final SnapshotInfo snapshotInfo = builder.execute().actionGet().getSnapshotInfo();
+            if (snapshotInfo.state() != SnapshotState.SUCCESS) {
+                onFailure("Snapshot " + snapshot + " is " + snapshotInfo.state() + ": " + snapshotInfo.shardFailures(), null);
+            }
+            final List<SnapshotStatus> statuses = client().admin().cluster().prepareSnapshotStatus(repository).setSnapshots(snapshot)
+                    .execute().actionGet().getSnapshots();
+            final SnapshotResult result = statuses.isEmpty() ? new SnapshotResult("snapshot", snapshot, 0, 0, Collections.emptyList())
+                    : SnapshotResult.ofSnapshotStatus(snapshot, statuses.get(0));
+            print(result.toString());
+            return result;
+        }
+    }
+
+    /**
+     * Restore indices from a snapshot and wait for it.
+     *
+     * @param repository a repository name
+     * @param snapshot a snapshot name
+     * @param renameSuffix a suffix added to restored index names, or null to restore into closed or deleted indices
+     * @param indices indices to restore, or all indices if empty
+     * @return recovered bytes and times per shard
+     */
+    public SnapshotResult restore(final String repository, final String snapshot, final String renameSuffix, final String... indices) {
+        try (RunnerCall call = startCall("restore", indices)) {
+            final long startTime = System.currentTimeMillis();
+            final RestoreSnapshotRequestBuilder builder = client().admin().cluster().prepareRestoreSnapshot(repository, snapshot)
+                    .setIncludeGlobalState(false).setWaitForCompletion(true);
+            if (indices.length > 0) {
+                builder.setIndices(indices);
+            }
+            if (renameSuffix != null) {
+                // aliases would point to both the original and the renamed index
+                builder.setRenamePattern("(.+)").setRenameReplacement("$1" + renameSuffix).setIncludeAliases(false);
+            }
+            final RestoreInfo restoreInfo = builder.execute().actionGet().getRestoreInfo();
+            final long elapsedMillis = System.currentTimeMillis() - startTime;
+            if (restoreInfo == null || restoreInfo.indices().isEmpty()) {
+                return new SnapshotResult("restore", snapshot, 0, elapsedMillis, Collections.emptyList());
+            }
+            if (restoreInfo.failedShards() > 0) {
+                onFailure("Failed to restore " + restoreInfo.failedShards() + " shards from " + snapshot + ".", null);
+            }
+            final RecoveryResponse recoveryResponse =
+                    client().admin().indices().prepareRecoveries(restoreInfo.indices().toArray(new String[0])).execute().actionGet();
+            final SnapshotResult result = SnapshotResult.ofRecoveries(snapshot, elapsedMillis, recoveryResponse.shardRecoveryStates());
+            print(result.toString());
+            return result;
+        }
+    }
+
+    /**
+     * Return transport publish addresses of running nodes.
+     *
+     * @return addresses such as "127.0.0.1:9300"
+     */
+    public List<String> getTransportAddresses() {
+        return nodeList.stream().filter(node -> !node.isClosed())
+                .map(node -> node.injector().getInstance(TransportService.class).boundAddress().publishAddress().toString())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Register a cluster of another runner as a remote cluster, and wait for the connection.
+     * The nodes of this runner need the remote_cluster_client role, such as by {@code -nodeRoles master,data,remote_cluster_client}.
+     *
+     * @param alias a remote cluster alias
+     * @param remote a runner of the remote cluster
+     */
+    public void connectRemoteCluster(final String alias, final ElasticsearchClusterRunner remote) {
+        try (RunnerCall call = startCall("connectRemoteCluster")) {
+            if (!node().injector().getInstance(ClusterService.class).localNode().isRemoteClusterClient()) {
+                throw new ClusterRunnerException("A node needs the remote_cluster_client role to connect to " + alias
+                        + ". Set it by -nodeRoles or node.roles in onBuild.");
+            }
+            final ClusterUpdateSettingsResponse actionGet = client().admin().cluster().prepareUpdateSettings()
+                    .setPersistentSettings(builder().putList("cluster.remote." + alias + ".seeds", remote.getTransportAddresses()))
+                    .execute().actionGet();
+            if (!actionGet.isAcknowledged()) {
+                onFailure("Failed to register a remote cluster " + alias + ".", actionGet);
+            }
+            final CompletableFuture<RemoteConnectionInfo> future = new CompletableFuture<>();
+            final AtomicReference<RemoteConnectionInfo> lastInfo = new AtomicReference<>();
+            checkRemoteConnection(alias, future, lastInfo);
+            try {
+                final RemoteConnectionInfo info = future.get(healthTimeout.millis(), TimeUnit.MILLISECONDS);
+                print("Connected to remote cluster " + alias + ": " + Strings.toString(info));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ClusterRunnerException("Interrupted while connecting to " + alias + ".", e);
+            } catch (final ExecutionException e) {
+                throw new ClusterRunnerException("Failed to connect to a remote cluster " + alias + ".", e.getCause());
+            } catch (final TimeoutException e) {
+                future.cancel(false);
+                final RemoteConnectionInfo info = lastInfo.get();
+                throw new ClusterRunnerException("Failed to connect to a remote cluster " + alias + " in " + healthTimeout + ": "
+                        + (info == null ? "not registered" : Strings.toString(info)), e);
+            }
+        }
+    }
+
+    private void checkRemoteConnection(final String alias, final CompletableFuture<RemoteConnectionInfo> future,
+            final AtomicReference<RemoteConnectionInfo> lastInfo) {
+        if (future.isDone()) {
+            return;
+        }
+        client().execute(RemoteInfoAction.INSTANCE, new RemoteInfoRequest(), ActionListener.wrap(response -> {
+            final RemoteConnectionInfo info =
+                    response.getInfos().stream().filter(i -> alias.equals(i.getClusterAlias())).findFirst().orElse(null);
+            lastInfo.set(info);
+            if (info != null && info.isConnected()) {
+                future.complete(info);
+            } else {
+                CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS)
+                        .execute(() -> checkRemoteConnection(alias, future, lastInfo));
+            }
+        }, future::completeExceptionally));
+    }
+
+    /**
+     * Unregister a remote cluster.
+     *
+     * @param alias a remote cluster alias
+     */
+    public void disconnectRemoteCluster(final String alias) {
+        try (RunnerCall call = startCall("disconnectRemoteCluster")) {
+            final ClusterUpdateSettingsResponse actionGet = client().admin().cluster().prepareUpdateSettings()
+                    .setPersistentSettings(builder().putNull("cluster.remote." + alias + ".seeds")).execute().actionGet();
+            if (!actionGet.isAcknowledged()) {
+                onFailure("Failed to unregister a remote cluster " + alias + ".", actionGet);
+            }
+        }
+    }
+
+    /**
+     * Search local and remote indices, such as "index,remote1:index".
+     *
+     * @param index index expressions with remote cluster aliases
+     * @param minimizeRoundtrips true if each remote cluster reduces its own results
+     * @param builder a search request builder callback
+     * @return search response
+     */
+    public SearchResponse crossClusterSearch(final String index, final boolean minimizeRoundtrips,
+            final BuilderCallback<SearchRequestBuilder> builder) {
+        try (RunnerCall call = startCall("crossClusterSearch", index)) {
+            final SearchRequestBuilder requestBuilder =
+                    builder.apply(client().prepareSearch(index.split(",")).setCcsMinimizeRoundtrips(minimizeRoundtrips));
+            if (call != null) {
+                call.source(() -> requestBuilder.request().toString());
+            }
+            return requestBuilder.execute().actionGet();
+        }
+    }
+
+    /**
+     * Create or update an ingest pipeline.
+     *
+     * @param id a pipeline id
+     * @param source a pipeline definition in JSON
+     */
+    public void createPipeline(final String id, final String source) {
+        try (RunnerCall call = startCall("createPipeline")) {
+            final AcknowledgedResponse actionGet =
+                    client().admin().cluster().preparePutPipeline(id, new BytesArray(source), XContentType.JSON).execute().actionGet();
+            if (!actionGet.isAcknowledged()) {
+                onFailure("Failed to create a pipeline " + id + ".", actionGet);
+            }
+        }
+    }
+
+    /**
+     * Delete an ingest pipeline.
+     *
+     * @param id a pipeline id
+     */
+    public void deletePipeline(final String id) {
+        try (RunnerCall call = startCall("deletePipeline")) {
+            final AcknowledgedResponse actionGet = client().admin().cluster().prepareDeletePipeline(id).execute().actionGet();
+            if (!actionGet.isAcknowledged()) {
+                onFailure("Failed to delete a pipeline " + id + ".", actionGet);
+            }
+        }
+    }
+
+    /**
+     * Run documents through a pipeline with _simulate in batches.
+     *
+     * @param id a pipeline id
+     * @param sources document sources in JSON
+     * @param batchSize the number of documents per _simulate request
+     * @return simulated documents, or errors, in the order of sources
+     */
+    public List<SimulateDocumentResult> simulatePipeline(final String id, final List<String> sources, final int batchSize) {
+        try (RunnerCall call = startCall("simulatePipeline")) {
+            final List<SimulateDocumentResult> results = new ArrayList<>(sources.size());
+            final long startTime = System.nanoTime();
+            for (int i = 0; i < sources.size(); i += batchSize) {
+                try (final XContentBuilder body = JsonXContent.contentBuilder()) {
+                    body.startObject().startArray("docs");
+                    for (int j = i; j < Math.min(i + batchSize, sources.size()); j++) {
+                        body.startObject().rawField("_source", new BytesArray(sources.get(j)).streamInput(), XContentType.JSON).endObject();
+                    }
+                    body.endArray().endObject();
+                    final SimulatePipelineResponse response = client().admin().cluster()
+                            .prepareSimulatePipeline(BytesReference.bytes(body), XContentType.JSON).setId(id).execute().actionGet();
+                    results.addAll(response.getResults());
+                } catch (final IOException e) {
+                    throw new ClusterRunnerException("Failed to simulate a pipeline " + id + ".", e);
+                }
+            }
+            final long elapsed = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+            print("Simulated " + results.size() + " documents with " + id + " in " + elapsed + "ms (" + results.size() * 1000L / elapsed
+                    + " docs/s).");
+            return results;
+        }
+    }
+
+    /**
+     * Bulk index documents through a pipeline and measure time per processor from ingest node stats.
+     *
+     * @param index an index name
+     * @param id a pipeline id
+     * @param sources document sources in JSON, which are repeated up to numOfDocs
+     * @param numOfDocs the number of documents to index
+     * @param bulkSize the number of documents per bulk request
+     * @return throughput and processor statistics
+     */
+    public PipelineBenchmarkResult benchmarkPipeline(final String index, final String id, final List<String> sources, final long numOfDocs,
+            final int bulkSize) {
+        try (RunnerCall call = startCall("benchmarkPipeline", index)) {
+            final List<PipelineBenchmarkResult.ProcessorStats> before = PipelineBenchmarkResult.sumProcessorStats(id, getIngestStats());
+            final StringBuilder buf = new StringBuilder(bulkSize * 256);
+            final long startTime = System.nanoTime();
+            long docId = 0;
+            while (docId < numOfDocs) {
+                buf.setLength(0);
+                for (int i = 0; i < bulkSize && docId < numOfDocs; i++, docId++) {
+                    buf.append("{\"index\":{}}\n").append(sources.get((int) (docId % sources.size()))).append('\n');
+                }
+                final BulkRequest bulkRequest =
+                        new BulkRequest().pipeline(id).add(new BytesArray(buf.toString()), index, XContentType.JSON);
+                final BulkResponse bulkResponse = client().bulk(bulkRequest).actionGet();
+                if (bulkResponse.hasFailures()) {
+                    onFailure(bulkResponse.buildFailureMessage(), bulkResponse);
+                }
+            }
+            final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+            final List<PipelineBenchmarkResult.ProcessorStats> after = PipelineBenchmarkResult.sumProcessorStats(id, getIngestStats());
+            final PipelineBenchmarkResult result =
+                    new PipelineBenchmarkResult(id, numOfDocs, elapsed, PipelineBenchmarkResult.diff(before, after));
+            print(result.toString());
+            return result;
+        }
+    }
+
+    /**
+     * Store scripts and compile them on all running nodes, so that first queries do not wait for
+     * compilation or count against script.max_compilations_rate.
+     *
+     * @param context a script context, such as ScoreScript.CONTEXT or NumberSortScript.CONTEXT
+     * @param scripts scripts by stored script ids
+     */
+    public void prewarmScripts(final ScriptContext<?> context, final Map<String, Script> scripts) {
+        try (RunnerCall call = startCall("prewarmScripts")) {
+            final long startTime = System.nanoTime();
+            for (final Map.Entry<String, Script> entry : scripts.entrySet()) {
+                final String id = entry.getKey();
+                final Script script = entry.getValue();
+                try (final XContentBuilder body = JsonXContent.contentBuilder()) {
+                    body.startObject().startObject("script").field("lang", script.getLang()).field("source", script.getIdOrCode())
+                            .endObject().endObject();
+                    final AcknowledgedResponse actionGet = client().admin().cluster().preparePutStoredScript().setId(id)
+                            .setContext(context.name).setContent(BytesReference.bytes(body), XContentType.JSON).execute().actionGet();
+                    if (!actionGet.isAcknowledged()) {
+                        onFailure("Failed to store a script " + id + ".", actionGet);
+                    }
+                } catch (final IOException e) {
+                    throw new ClusterRunnerException("Failed to store a script " + id + ".", e);
+                }
+            }
+            int numOfNodes = 0;
+            for (final Node node : nodeList) {
+                if (node.isClosed()) {
+                    continue;
+                }
+                final ScriptService scriptService = node.injector().getInstance(ScriptService.class);
+                for (final String id : scripts.keySet()) {
+                    scriptService.compile(new Script(ScriptType.STORED, null, id, Collections.emptyMap()), context);
+                }
+                numOfNodes++;
+            }
+            print("Prewarmed " + scripts.size() + " scripts on " + numOfNodes + " nodes in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + "ms.");
+        }
+    }
+
+    /**
+     * Store and compile scripts in a directory on all running nodes.
+     * A file is named "&lt;id&gt;.&lt;context&gt;.&lt;lang&gt;", such as "my_score.score.painless".
+     *
+     * @param dir a script directory
+     */
+    public void prewarmScripts(final Path dir) {
+        try (RunnerCall call = startCall("prewarmScripts")) {
+            final Map<String, Map<String, Script>> scriptsMap = new LinkedHashMap<>();
+            try (Stream<Path> stream = Files.list(dir)) {
+                for (final Path path : stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+                    final String[] values = path.getFileName().toString().split("\\.");
+                    if (values.length != 3) {
+                        throw new ClusterRunnerException("Invalid script file name: " + path);
+                    }
+                    final String source = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+                    scriptsMap.computeIfAbsent(values[1], k -> new LinkedHashMap<>()).put(values[0],
+                            new Script(ScriptType.INLINE, values[2], source, Collections.emptyMap()));
+                }
+            } catch (final IOException e) {
+                throw new ClusterRunnerException("Failed to read scripts in " + dir, e);
+            }
+            for (final Map.Entry<String, Map<String, Script>> entry : scriptsMap.entrySet()) {
+                final ScriptContext<?> context = ScriptModule.CORE_CONTEXTS.get(entry.getKey());
+                if (context == null) {
+                    throw new ClusterRunnerException("Unknown script context: " + entry.getKey());
+                }
+                prewarmScripts(context, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Copy documents from an index to another index with _reindex, and wait for it.
+     *
+     * @param source a source index
+     * @param dest a destination index
+     * @return the number of created and updated documents
+     */
+    public long reindex(final String source, final String dest) {
+        final ReindexProgress progress = reindex(source, dest, 0, 1000, -1, null);
+        return progress.getCreated() + progress.getUpdated();
+    }
+
+    /**
+     * Reindex with slices and wait for it, reporting progress of the task every second.
+     *
+     * @param source a source index
+     * @param dest a destination index
+     * @param slices the number of slices, or 0 for one slice per shard
+     * @param batchSize the number of documents per scroll batch
+     * @param requestsPerSecond a throttle, or -1 for no limit
+     * @param listener a progress listener, or null
+     * @return the final progress
+     */
+    public ReindexProgress reindex(final String source, final String dest, final int slices, final int batchSize,
+            final float requestsPerSecond, final Consumer<ReindexProgress> listener) {
+        try (RunnerCall call = startCall("reindex", source)) {
+            final String taskId = startReindex(source, dest, slices, batchSize, requestsPerSecond);
+            ReindexProgress progress = getReindexProgress(taskId);
+            while (!progress.isCompleted()) {
+                if (listener != null) {
+                    listener.accept(progress);
+                }
+                try {
+                    Thread.sleep(1000);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ClusterRunnerException("Interrupted while waiting for " + taskId + ".", e);
+                }
+                progress = getReindexProgress(taskId);
+            }
+            if (listener != null) {
+                listener.accept(progress);
+            }
+            if (!progress.getFailures().isEmpty()) {
+                onFailure("Failed to reindex " + source + " to " + dest + ": " + progress.getFailures(), null);
+            }
+            print("Reindexed " + progress.getProcessed() + " documents from " + source + " to " + dest + " in "
+                    + TimeUnit.NANOSECONDS.toMillis(progress.getRunningTimeNanos()) + "ms (" + progress.getDocsPerSecond() + " docs/s).");
+            return progress;
+        }
+    }
+
+    /**
+     * Start reindexing as a task.
+     *
+     * @param source a source index
+     * @param dest a destination index
+     * @param slices the number of slices, or 0 for one slice per shard
+     * @param batchSize the number of documents per scroll batch
+     * @param requestsPerSecond a throttle, or -1 for no limit
+     * @return a task id
+     */
+    public String startReindex(final String source, final String dest, final int slices, final int batchSize,
+            final float requestsPerSecond) {
+        try (RunnerCall call = startCall("startReindex", source)) {
+            final ReindexRequest request = new ReindexRequest();
+            request.setSourceIndices(source.split(","));
+            request.setSourceBatchSize(batchSize);
+            request.setDestIndex(dest);
+            request.setSlices(slices > 0 ? slices : AbstractBulkByScrollRequest.AUTO_SLICES);
+            request.setRequestsPerSecond(toRequestsPerSecond(requestsPerSecond));
+            request.setRefresh(true);
+            // executeLocally() returns the task before it completes, like wait_for_completion=false
+            final NodeClient nodeClient = node().injector().getInstance(NodeClient.class);
+            final PlainActionFuture<BulkByScrollResponse> future = new PlainActionFuture<>();
+            final Task task = nodeClient.executeLocally(ReindexAction.INSTANCE, request, future);
+            final String taskId = new TaskId(nodeClient.getLocalNodeId(), task.getId()).toString();
+            reindexTasks.put(taskId, future);
+            return taskId;
+        }
+    }
+
+    /**
+     * Change the throttle of a running reindex task.
+     *
+     * @param taskId a task id
+     * @param requestsPerSecond a new throttle, or -1 for no limit
+     */
+    public void rethrottleReindex(final String taskId, final float requestsPerSecond) {
+        try (RunnerCall call = startCall("rethrottleReindex")) {
+            final RethrottleRequest request = new RethrottleRequest();
+            request.setTargetTaskId(new TaskId(taskId));
+            request.setRequestsPerSecond(toRequestsPerSecond(requestsPerSecond));
+            final ListTasksResponse response = client().execute(RethrottleAction.INSTANCE, request).actionGet();
+            if (!response.getTaskFailures().isEmpty() || !response.getNodeFailures().isEmpty()) {
+                onFailure("Failed to rethrottle " + taskId + ": " + response.getTaskFailures() + response.getNodeFailures(), response);
+            }
+            print("Rethrottled " + taskId + " to " + requestsPerSecond + " requests/s.");
+        }
+    }
+
+    private static float toRequestsPerSecond(final float requestsPerSecond) {
+        return requestsPerSecond > 0 ? requestsPerSecond : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * A task started by startReindex is forgotten once its final progress is returned,
+     * so later calls only see it through the task API.
+     *
+     * @param taskId a task id
+     * @return progress of a reindex task
+     */
+    public ReindexProgress getReindexProgress(final String taskId) {
+        final PlainActionFuture<BulkByScrollResponse> future = reindexTasks.get(taskId);
+        if (future == null || !future.isDone()) {
+            try {
+                return ReindexProgress.of(taskId,
+                        client().admin().cluster().prepareGetTask(taskId).execute().actionGet().getTask().getTask());
+            } catch (final ResourceNotFoundException e) {
+                if (future == null) {
+                    throw e;
+                }
+                // completed after isDone() was checked
+            }
+        }
+        reindexTasks.remove(taskId, future);
+        try {
+            return ReindexProgress.of(taskId, future.actionGet());
+        } catch (final ElasticsearchException e) {
+            return new ReindexProgress(taskId, true, 0, 0, 0, 0, 0, 0, -1, 0, List.of(e));
+        }
+    }
+
+    protected List<IngestStats> getIngestStats() {
+        return client().admin().cluster().prepareNodesStats().clear().setIngest(true).execute().actionGet().getNodes().stream()
+                .map(NodeStats::getIngestStats).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
     public AcknowledgedResponse createMapping(final String index, final String mappingSource) {
         return createMapping(index, builder -> builder.setSource(mappingSource, xContentType(mappingSource)));
     }
@@ -891,6 +2555,12 @@ public class ElasticsearchClusterRunner implements Closeable {
     }
 
     public AcknowledgedResponse createMapping(final String index, final BuilderCallback<PutMappingRequestBuilder> builder) {
+        try (RunnerCall call = startCall("createMapping", index)) {
+            return doCreateMapping(index, builder);
+        }
+    }
+
+    protected AcknowledgedResponse doCreateMapping(final String index, final BuilderCallback<PutMappingRequestBuilder> builder) {
         final AcknowledgedResponse actionGet = builder.apply(client().admin().indices().preparePutMapping(index)).execute().actionGet();
         if (!actionGet.isAcknowledged()) {
             onFailure("Failed to create a mapping for " + index + ".", actionGet);
@@ -905,6 +2575,13 @@ public class ElasticsearchClusterRunner implements Closeable {
 
     public DocWriteResponse insert(final String index, final String id,
             final BuilderCallback<IndexRequestBuilder> builder) {
+        try (RunnerCall call = startCall("insert", index)) {
+            return doInsert(index, id, recordSource(call, builder));
+        }
+    }
+
+    protected DocWriteResponse doInsert(final String index, final String id,
+            final BuilderCallback<IndexRequestBuilder> builder) {
         final DocWriteResponse actionGet = builder.apply(client().prepareIndex().setIndex(index).setId(id)).execute().actionGet();
         if (actionGet.getResult() != Result.CREATED) {
             onFailure("Failed to insert " + id + " into " + index + ".", actionGet);
@@ -912,12 +2589,109 @@ public class ElasticsearchClusterRunner implements Closeable {
         return actionGet;
     }
 
+    /**
+     * Index reproducible documents generated from the mapping of an index.
+     *
+     * @param index an index name
+     * @param numOfDocs the number of documents
+     * @param seed a seed for documents
+     * @return the number of indexed documents
+     */
+    public long generateDocuments(final String index, final long numOfDocs, final long seed) {
+        final MappingMetadata mappingMetadata =
+                client().admin().indices().prepareGetMappings(index).execute().actionGet().mappings().get(index);
+        if (mappingMetadata == null) {
+            throw new ClusterRunnerException("Mapping for " + index + " is not found.");
+        }
+        return indexDocuments(index, new DocumentGenerator(mappingMetadata.sourceAsMap(), seed), numOfDocs,
+                Runtime.getRuntime().availableProcessors(), 1000);
+    }
+
+    /**
+     * Index generated documents with bulk requests on multiple threads.
+     * Document numbers are split into ranges per thread and used as _id.
+     *
+     * @param index an index name
+     * @param generator a document generator
+     * @param numOfDocs the number of documents
+     * @param numOfThreads the number of indexing threads
+     * @param bulkSize the number of documents in a bulk request
+     * @return the number of indexed documents
+     */
+    public long indexDocuments(final String index, final DocumentGenerator generator, final long numOfDocs, final int numOfThreads,
+            final int bulkSize) {
+        try (RunnerCall call = startCall("indexDocuments", index)) {
+            final List<Node> nodes = nodeList.stream().filter(node -> !node.isClosed()).collect(Collectors.toList());
+            final ExecutorService executor = Executors.newFixedThreadPool(numOfThreads);
+            final long startTime = System.nanoTime();
+            try {
+                final List<Future<Long>> futures = new ArrayList<>();
+                for (int i = 0; i < numOfThreads; i++) {
+                    final long start = numOfDocs * i / numOfThreads;
+                    final long end = numOfDocs * (i + 1) / numOfThreads;
+                    final Client client = nodes.get(i % nodes.size()).client();
+                    futures.add(executor.submit(() -> {
+                        final DocumentRandom random = new DocumentRandom(0);
+                        final StringBuilder buf = new StringBuilder(bulkSize * 256);
+                        // bulk bodies are encoded into one reused buffer; it is rewritten only after the previous bulk has completed
+                        final BytesStreamOutput out = new BytesStreamOutput(bulkSize * 256);
+                        final Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                        char[] chars = new char[bulkSize * 256];
+                        long count = 0;
+                        long docId = start;
+                        while (docId < end) {
+                            buf.setLength(0);
+                            for (int j = 0; j < bulkSize && docId < end; j++, docId++) {
+                                generator.generateBulkItem(docId, random, buf);
+                            }
+                            if (chars.length < buf.length()) {
+                                chars = new char[buf.length()];
+                            }
+                            buf.getChars(0, buf.length(), chars, 0);
+                            out.seek(0);
+                            writer.write(chars, 0, buf.length());
+                            writer.flush();
+                            final BulkRequest bulkRequest = new BulkRequest().add(out.bytes(), index, XContentType.JSON);
+                            final BulkResponse bulkResponse = client.bulk(bulkRequest).actionGet();
+                            if (bulkResponse.hasFailures()) {
+                                throw new ClusterRunnerException(bulkResponse.buildFailureMessage(), bulkResponse);
+                            }
+                            count += bulkResponse.getItems().length;
+                        }
+                        return count;
+                    }));
+                }
+                long total = 0;
+                for (final Future<Long> future : futures) {
+                    total += future.get();
+                }
+                final long elapsed = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                print("Indexed " + total + " documents into " + index + " in " + elapsed + "ms (" + total * 1000 / elapsed + " docs/s).");
+                return total;
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ClusterRunnerException("Interrupted while indexing documents into " + index + ".", e);
+            } catch (final ExecutionException e) {
+                throw new ClusterRunnerException("Failed to index documents into " + index + ".", e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
     public DeleteResponse delete(final String index, final String id) {
         return delete(index, id, builder -> builder.setRefreshPolicy(RefreshPolicy.IMMEDIATE));
     }
 
     public DeleteResponse delete(final String index, final String id,
             final BuilderCallback<DeleteRequestBuilder> builder) {
+        try (RunnerCall call = startCall("delete", index)) {
+            return doDelete(index, id, builder);
+        }
+    }
+
+    protected DeleteResponse doDelete(final String index, final String id,
+            final BuilderCallback<DeleteRequestBuilder> builder) {
         final DeleteResponse actionGet = builder.apply(client().prepareDelete().setIndex(index).setId(id)).execute().actionGet();
         if (actionGet.getResult() != Result.DELETED) {
             onFailure("Failed to delete " + id + " from " + index + ".", actionGet);
@@ -930,6 +2704,12 @@ public class ElasticsearchClusterRunner implements Closeable {
     }
 
     public SearchResponse count(final String index, final BuilderCallback<SearchRequestBuilder> builder) {
+        try (RunnerCall call = startCall("count", index)) {
+            return doCount(index, recordSource(call, builder));
+        }
+    }
+
+    protected SearchResponse doCount(final String index, final BuilderCallback<SearchRequestBuilder> builder) {
         return builder.apply(client().prepareSearch(index).setSize(0)).execute().actionGet();
     }
 
@@ -940,6 +2720,12 @@ public class ElasticsearchClusterRunner implements Closeable {
     }
 
     public SearchResponse search(final String index, final BuilderCallback<SearchRequestBuilder> builder) {
+        try (RunnerCall call = startCall("search", index)) {
+            return doSearch(index, recordSource(call, builder));
+        }
+    }
+
+    protected SearchResponse doSearch(final String index, final BuilderCallback<SearchRequestBuilder> builder) {
         return builder.apply(client().prepareSearch(index)).execute().actionGet();
     }
 
@@ -948,6 +2734,12 @@ public class ElasticsearchClusterRunner implements Closeable {
     }
 
     public GetAliasesResponse getAlias(final String alias, final BuilderCallback<GetAliasesRequestBuilder> builder) {
+        try (RunnerCall call = startCall("getAlias", alias)) {
+            return doGetAlias(alias, builder);
+        }
+    }
+
+    protected GetAliasesResponse doGetAlias(final String alias, final BuilderCallback<GetAliasesRequestBuilder> builder) {
         return builder.apply(client().admin().indices().prepareGetAliases(alias)).execute().actionGet();
     }
 
@@ -964,6 +2756,12 @@ public class ElasticsearchClusterRunner implements Closeable {
     }
 
     public AcknowledgedResponse updateAlias(final BuilderCallback<IndicesAliasesRequestBuilder> builder) {
+        try (RunnerCall call = startCall("updateAlias")) {
+            return doUpdateAlias(builder);
+        }
+    }
+
+    protected AcknowledgedResponse doUpdateAlias(final BuilderCallback<IndicesAliasesRequestBuilder> builder) {
         final AcknowledgedResponse actionGet = builder.apply(client().admin().indices().prepareAliases()).execute().actionGet();
         if (!actionGet.isAcknowledged()) {
             onFailure("Failed to update aliases.", actionGet);
@@ -975,6 +2773,24 @@ public class ElasticsearchClusterRunner implements Closeable {
         return getInstance(ClusterService.class);
     }
 
+    /**
+     * Subscribe cluster state changes applied on all running nodes.
+     * Close the returned stream to unsubscribe.
+     *
+     * @param capacity the max number of buffered events
+     * @param types event types to receive, or empty for all types
+     * @return event stream
+     */
+    public ClusterStateEventStream subscribeClusterStateEvents(final int capacity, final ClusterStateEvent.Type... types) {
+        final Map<String, ClusterService> clusterServices = new LinkedHashMap<>();
+        for (final Node node : nodeList) {
+            if (!node.isClosed()) {
+                clusterServices.put(node.settings().get(NODE_NAME), node.injector().getInstance(ClusterService.class));
+            }
+        }
+        return new ClusterStateEventStream(clusterServices, capacity, Arrays.asList(types));
+    }
+
     public synchronized <T> T getInstance(final Class<T> clazz) {
         final Node node = masterNode();
         return node.injector().getInstance(clazz);
@@ -985,6 +2801,7 @@ public class ElasticsearchClusterRunner implements Closeable {
     }
 
     private void onFailure(final String message, final ActionResponse response) {
+        dumpFlightRecording("failure");
         if (printOnFailure) {
             print(message);
         } else {
@@ -1096,6 +2913,12 @@ public class ElasticsearchClusterRunner implements Closeable {
             return this;
         }
 
+        public Configs nodeRoles(final String... nodeRoles) {
+            configList.add("-nodeRoles");
+            configList.add(String.join(",", nodeRoles));
+            return this;
+        }
+
         public Configs useLogger() {
             configList.add("-useLogger");
             return this;
@@ -1128,6 +2951,99 @@ public class ElasticsearchClusterRunner implements Closeable {
             return this;
         }
 
+        public Configs resetMode(final String resetMode) {
+            configList.add("-resetMode");
+            configList.add(resetMode);
+            return this;
+        }
+
+        public Configs telemetryInterval(final long telemetryInterval) {
+            configList.add("-telemetryInterval");
+            configList.add(String.valueOf(telemetryInterval));
+            return this;
+        }
+
+        public Configs telemetryCapacity(final int telemetryCapacity) {
+            configList.add("-telemetryCapacity");
+            configList.add(String.valueOf(telemetryCapacity));
+            return this;
+        }
+
+        public Configs flightRecorder(final String flightRecorder) {
+            configList.add("-flightRecorder");
+            configList.add(flightRecorder);
+            return this;
+        }
+
+        public Configs flightRecorderActions() {
+            configList.add("-flightRecorderActions");
+            return this;
+        }
+
+        public Configs slowLogThreshold(final long slowLogThreshold) {
+            configList.add("-slowLogThreshold");
+            configList.add(String.valueOf(slowLogThreshold));
+            return this;
+        }
+
+        public Configs slowLogTopN(final int slowLogTopN) {
+            configList.add("-slowLogTopN");
+            configList.add(String.valueOf(slowLogTopN));
+            return this;
+        }
+
+        public Configs dataPaths(final String dataPaths) {
+            configList.add("-dataPaths");
+            configList.add(dataPaths);
+            return this;
+        }
+
+        public Configs numOfDataPaths(final int numOfDataPaths) {
+            configList.add("-numOfDataPaths");
+            configList.add(String.valueOf(numOfDataPaths));
+            return this;
+        }
+
+        public Configs networkFaults() {
+            configList.add("-networkFaults");
+            return this;
+        }
+
+        public Configs ioThrottle(final String ioThrottle) {
+            configList.add("-ioThrottle");
+            configList.add(ioThrottle);
+            return this;
+        }
+
+        public Configs transportMode(final String transportMode) {
+            configList.add("-transportMode");
+            configList.add(transportMode);
+            return this;
+        }
+
+        public Configs prewarmScripts(final String prewarmScripts) {
+            configList.add("-prewarmScripts");
+            configList.add(prewarmScripts);
+            return this;
+        }
+
+        public Configs cpuBudget(final int cpuBudget) {
+            configList.add("-cpuBudget");
+            configList.add(String.valueOf(cpuBudget));
+            return this;
+        }
+
+        public Configs settingsPreset(final String settingsPreset) {
+            configList.add("-settingsPreset");
+            configList.add(settingsPreset);
+            return this;
+        }
+
+        public Configs slowLogSource() {
+            configList.add("-slowLogSource");
+            return this;
+        }
+
         public String[] build() {
             return configList.toArray(new String[configList.size()]);
         }
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+
+/**
+ * FlightRecorderSession records a JFR recording from build() to close() of a cluster runner
+ * with runner specific events.
+ */
+public class FlightRecorderSession implements Closeable {
+
+    public static final String CATEGORY = "Elasticsearch Cluster Runner";
+
+    private final Recording recording;
+
+    private final Path outputPath;
+
+    private final boolean recordActions;
+
+    /**
+     * @param outputPath a directory to write recordings
+     * @param configuration a JFR configuration name, such as "default" or "profile"
+     */
+    public FlightRecorderSession(final Path outputPath, final String configuration) {
+        this(outputPath, configuration, false);
+    }
+
+    /**
+     * @param outputPath a directory to write recordings
+     * @param configuration a JFR configuration name, such as "default" or "profile"
+     * @param recordActions true if each transport action sent by runner helpers is also recorded
+     */
+    public FlightRecorderSession(final Path outputPath, final String configuration, final boolean recordActions) {
+        this.outputPath = outputPath;
+        this.recordActions = recordActions;
+        try {
+            recording = new Recording(Configuration.getConfiguration(configuration));
+        } catch (final IOException | ParseException e) {
+            throw new ClusterRunnerException("Failed to load JFR configuration: " + configuration, e);
+        }
+        recording.setName("cluster-runner");
+        recording.setToDisk(true);
+        recording.enable(NodeStartupEvent.class);
+        recording.enable(RunnerCallEvent.class);
+        if (recordActions) {
+            recording.enable(ActionEvent.class);
+        }
+        recording.enable(HealthWaitEvent.class);
+        recording.start();
+    }
+
+    /**
+     * Write the current recording to the output directory.
+     *
+     * @param label a label of a file name
+     * @return a written file
+     */
+    public Path dump(final String label) {
+        final String timestamp = new SimpleDateFormat("yyyyMMddHHmmssSSS", Locale.ROOT).format(new Date());
+        final Path path = outputPath.resolve("cluster-runner-" + label + "-" + timestamp + ".jfr");
+        try {
+            recording.dump(path);
+        } catch (final IOException e) {
+            throw new ClusterRunnerException("Failed to dump a recording to " + path, e);
+        }
+        return path;
+    }
+
+    /**
+     * @return true if transport actions are recorded as well as helper calls
+     */
+    public boolean isRecordActions() {
+        return recordActions;
+    }
+
+    @Override
+    public void close() {
+        recording.close();
+    }
+
+    @Name("org.codelibs.elasticsearch.runner.NodeStartup")
+    @Label("Node Startup")
+    @Category(CATEGORY)
+    public static class NodeStartupEvent extends Event {
+        @Label("Node Name")
+        public String nodeName;
+
+        @Label("Phase")
+        public String phase;
+    }
+
+    @Name("org.codelibs.elasticsearch.runner.RunnerCall")
+    @Label("Runner Call")
+    @Category(CATEGORY)
+    public static class RunnerCallEvent extends Event {
+        @Label("Node Name")
+        public String nodeName;
+
+        @Label("Method")
+        public String method;
+
+        @Label("Indices")
+        public String indices;
+    }
+
+    @Name("org.codelibs.elasticsearch.runner.Action")
+    @Label("Runner Action")
+    @Category(CATEGORY)
+    public static class ActionEvent extends Event {
+        @Label("Node Name")
+        public String nodeName;
+
+        @Label("Action")
+        public String action;
+
+        @Label("Request")
+        public String request;
+
+        @Label("Success")
+        public boolean success;
+    }
+
+    @Name("org.codelibs.elasticsearch.runner.HealthWait")
+    @Label("Cluster Health Wait")
+    @Category(CATEGORY)
+    public static class HealthWaitEvent extends Event {
+        @Label("Node Name")
+        public String nodeName;
+
+        @Label("Expected Status")
+        public String expectedStatus;
+
+        @Label("Status")
+        public String status;
+
+        @Label("Indices")
+        public String indices;
+
+        @Label("Timed Out")
+        public boolean timedOut;
+    }
+}
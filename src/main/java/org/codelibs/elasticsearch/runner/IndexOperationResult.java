@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a refresh, flush or force-merge operation on an index,
+ * with segment counts and merged bytes per shard copy.
+ */
+public class IndexOperationResult {
+
+    private final String operation;
+
+    private final String index;
+
+    private final long elapsedMillis;
+
+    private final List<ShardResult> shardResults;
+
+    public IndexOperationResult(final String operation, final String index, final long elapsedMillis,
+            final List<ShardResult> shardResults) {
+        this.operation = operation;
+        this.index = index;
+        this.elapsedMillis = elapsedMillis;
+        this.shardResults = Collections.unmodifiableList(shardResults);
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getIndex() {
+        return index;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public List<ShardResult> getShardResults() {
+        return shardResults;
+    }
+
+    public long getSegmentsBefore() {
+        return shardResults.stream().mapToLong(ShardResult::getSegmentsBefore).sum();
+    }
+
+    public long getSegmentsAfter() {
+        return shardResults.stream().mapToLong(ShardResult::getSegmentsAfter).sum();
+    }
+
+    public long getMergedBytes() {
+        return shardResults.stream().mapToLong(ShardResult::getMergedBytes).sum();
+    }
+
+    @Override
+    public String toString() {
+        return operation + " " + index + ": " + elapsedMillis + "ms, segments " + getSegmentsBefore() + " -> " + getSegmentsAfter()
+                + ", merged " + getMergedBytes() + " bytes, shards " + shardResults;
+    }
+
+    /**
+     * Statistics of a shard copy.
+     */
+    public static class ShardResult {
+        private final int shardId;
+
+        private final boolean primary;
+
+        private final String nodeId;
+
+        private final long segmentsBefore;
+
+        private final long segmentsAfter;
+
+        private final long mergedBytes;
+
+        private final long mergeTimeMillis;
+
+        public ShardResult(final int shardId, final boolean primary, final String nodeId, final long segmentsBefore,
+                final long segmentsAfter, final long mergedBytes, final long mergeTimeMillis) {
+            this.shardId = shardId;
+            this.primary = primary;
+            this.nodeId = nodeId;
+            this.segmentsBefore = segmentsBefore;
+            this.segmentsAfter = segmentsAfter;
+            this.mergedBytes = mergedBytes;
+            this.mergeTimeMillis = mergeTimeMillis;
+        }
+
+        public int getShardId() {
+            return shardId;
+        }
+
+        public boolean isPrimary() {
+            return primary;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public long getSegmentsBefore() {
+            return segmentsBefore;
+        }
+
+        public long getSegmentsAfter() {
+            return segmentsAfter;
+        }
+
+        public long getMergedBytes() {
+            return mergedBytes;
+        }
+
+        public long getMergeTimeMillis() {
+            return mergeTimeMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + shardId + (primary ? "p" : "r") + "@" + nodeId + " segments " + segmentsBefore + "->" + segmentsAfter + " merged "
+                    + mergedBytes + "b in " + mergeTimeMillis + "ms]";
+        }
+    }
+}
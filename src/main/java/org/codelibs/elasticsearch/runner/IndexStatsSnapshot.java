@@ -0,0 +1,180 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+import org.elasticsearch.action.admin.indices.stats.CommonStats;
+import org.elasticsearch.action.admin.indices.stats.IndicesStatsResponse;
+import org.elasticsearch.action.admin.indices.stats.ShardStats;
+import org.elasticsearch.cluster.routing.ShardRouting;
+
+/**
+ * A compact copy of index statistics per index and shard copy.
+ * Two snapshots can be compared by {@link #diff(IndexStatsSnapshot)}.
+ *
+ * Lucene 9 keeps terms, points and doc values off-heap, so Elasticsearch 8 reports
+ * no memory for them; index writer, version map and bitset memory are captured instead.
+ */
+public class IndexStatsSnapshot {
+
+    public enum Metric {
+        DOCS(s -> s.getDocs().getCount()), //
+        STORE_SIZE(s -> s.getStore().sizeInBytes()), //
+        SEGMENTS(s -> s.getSegments().getCount()), //
+        INDEX_WRITER_MEMORY(s -> s.getSegments().getIndexWriterMemoryInBytes()), //
+        VERSION_MAP_MEMORY(s -> s.getSegments().getVersionMapMemoryInBytes()), //
+        BITSET_MEMORY(s -> s.getSegments().getBitsetMemoryInBytes()), //
+        TRANSLOG_SIZE(s -> s.getTranslog().getTranslogSizeInBytes()), //
+        TRANSLOG_OPERATIONS(s -> s.getTranslog().estimatedNumberOfOperations()), //
+        MERGE_TOTAL(s -> s.getMerge().getTotal()), //
+        MERGE_TIME(s -> s.getMerge().getTotalTimeInMillis()), //
+        MERGE_SIZE(s -> s.getMerge().getTotalSizeInBytes()), //
+        REFRESH_TOTAL(s -> s.getRefresh().getTotal()), //
+        REFRESH_TIME(s -> s.getRefresh().getTotalTimeInMillis()), //
+        FLUSH_TOTAL(s -> s.getFlush().getTotal()), //
+        QUERY_COUNT(s -> s.getSearch().getTotal().getQueryCount()), //
+        QUERY_TIME(s -> s.getSearch().getTotal().getQueryTimeInMillis()), //
+        FETCH_COUNT(s -> s.getSearch().getTotal().getFetchCount()), //
+        FETCH_TIME(s -> s.getSearch().getTotal().getFetchTimeInMillis());
+
+        private final ToLongFunction<CommonStats> extractor;
+
+        Metric(final ToLongFunction<CommonStats> extractor) {
+            this.extractor = extractor;
+        }
+
+        long get(final CommonStats stats) {
+            return extractor.applyAsLong(stats);
+        }
+    }
+
+    private final long timestamp;
+
+    private final Map<String, Map<String, long[]>> shardValues;
+
+    protected IndexStatsSnapshot(final long timestamp, final Map<String, Map<String, long[]>> shardValues) {
+        this.timestamp = timestamp;
+        this.shardValues = shardValues;
+    }
+
+    /**
+     * Create a snapshot from index stats requested with all flags.
+     *
+     * @param response index stats response
+     * @return snapshot
+     */
+    public static IndexStatsSnapshot of(final IndicesStatsResponse response) {
+        final Map<String, Map<String, long[]>> shardValues = new LinkedHashMap<>();
+        final Metric[] metrics = Metric.values();
+        for (final ShardStats shardStats : response.getShards()) {
+            final ShardRouting shardRouting = shardStats.getShardRouting();
+            final long[] values = new long[metrics.length];
+            for (final Metric metric : metrics) {
+                values[metric.ordinal()] = metric.get(shardStats.getStats());
+            }
+            shardValues.computeIfAbsent(shardRouting.getIndexName(), k -> new LinkedHashMap<>()).put(getShardKey(shardRouting), values);
+        }
+        return new IndexStatsSnapshot(System.currentTimeMillis(), shardValues);
+    }
+
+    protected static String getShardKey(final ShardRouting shardRouting) {
+        return shardRouting.shardId().id() + (shardRouting.primary() ? "p" : "r") + "@" + shardRouting.currentNodeId();
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public Map<String, Map<String, long[]>> getShardValues() {
+        return Collections.unmodifiableMap(shardValues);
+    }
+
+    /**
+     * @param index an index name
+     * @param metric a metric
+     * @return the sum over all shard copies of the index
+     */
+    public long get(final String index, final Metric metric) {
+        final Map<String, long[]> shards = shardValues.get(index);
+        if (shards == null) {
+            return 0;
+        }
+        long value = 0;
+        for (final long[] values : shards.values()) {
+            value += values[metric.ordinal()];
+        }
+        return value;
+    }
+
+    /**
+     * @param index an index name
+     * @param shardKey a shard copy key such as "0p@nodeId"
+     * @param metric a metric
+     * @return the value of the shard copy
+     */
+    public long get(final String index, final String shardKey, final Metric metric) {
+        final Map<String, long[]> shards = shardValues.get(index);
+        if (shards == null || !shards.containsKey(shardKey)) {
+            return 0;
+        }
+        return shards.get(shardKey)[metric.ordinal()];
+    }
+
+    /**
+     * Subtract a previous snapshot from this snapshot.
+     * Shard copies missing in the previous snapshot are compared with zero.
+     *
+     * @param previous a previous snapshot
+     * @return a snapshot which has differences as values
+     */
+    public IndexStatsSnapshot diff(final IndexStatsSnapshot previous) {
+        final Map<String, Map<String, long[]>> diffValues = new LinkedHashMap<>();
+        for (final Map.Entry<String, Map<String, long[]>> indexEntry : shardValues.entrySet()) {
+            final Map<String, long[]> previousShards = previous.shardValues.getOrDefault(indexEntry.getKey(), Collections.emptyMap());
+            final Map<String, long[]> diffShards = new LinkedHashMap<>();
+            for (final Map.Entry<String, long[]> shardEntry : indexEntry.getValue().entrySet()) {
+                final long[] current = shardEntry.getValue();
+                final long[] before = previousShards.get(shardEntry.getKey());
+                final long[] values = new long[current.length];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = current[i] - (before != null ? before[i] : 0);
+                }
+                diffShards.put(shardEntry.getKey(), values);
+            }
+            diffValues.put(indexEntry.getKey(), diffShards);
+        }
+        return new IndexStatsSnapshot(timestamp - previous.timestamp, diffValues);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder(200);
+        for (final String index : shardValues.keySet()) {
+            buf.append(index).append(':');
+            for (final Metric metric : Metric.values()) {
+                buf.append(' ').append(metric.name().toLowerCase(Locale.ROOT)).append('=').append(get(index, metric));
+            }
+            buf.append('\n');
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionHandler;
+import org.elasticsearch.index.IndexingPressure;
+import org.elasticsearch.index.stats.IndexingPressureStats;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.indices.breaker.CircuitBreakerStats;
+import org.elasticsearch.node.Node;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.xcontent.XContentBuilder;
+import org.elasticsearch.xcontent.XContentFactory;
+
+/**
+ * NodeTelemetryCollector samples thread pools, circuit breakers and indexing pressure
+ * of each node, and GC and allocation of the JVM, into a ring buffer at a fixed interval.
+ */
+public class NodeTelemetryCollector implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(NodeTelemetryCollector.class);
+
+    public static final String JVM = "jvm";
+
+    private static final String[] THREAD_POOLS = new String[] { ThreadPool.Names.WRITE, ThreadPool.Names.SEARCH, ThreadPool.Names.GET,
+            ThreadPool.Names.MANAGEMENT, ThreadPool.Names.GENERIC, ThreadPool.Names.REFRESH, ThreadPool.Names.FLUSH,
+            ThreadPool.Names.FORCE_MERGE };
+
+    private final Supplier<Map<String, Node>> nodeSupplier;
+
+    private final int capacity;
+
+    private final Deque<Sample> samples;
+
+    private final ScheduledExecutorService scheduler;
+
+    private long lastAllocatedBytes = -1;
+
+    private long lastSampleTime;
+
+    /**
+     * @param nodeSupplier running nodes with node names as keys
+     * @param intervalMillis a sampling interval
+     * @param capacity the max number of samples kept in the buffer
+     */
+    public NodeTelemetryCollector(final Supplier<Map<String, Node>> nodeSupplier, final long intervalMillis, final int capacity) {
+        this.nodeSupplier = nodeSupplier;
+        this.capacity = capacity;
+        this.samples = new ArrayDeque<>(capacity);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "cluster-runner-telemetry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::sample, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    protected void sample() {
+        try {
+            final long now = System.currentTimeMillis();
+            final List<Sample> newSamples = new ArrayList<>();
+            for (final Map.Entry<String, Node> entry : nodeSupplier.get().entrySet()) {
+                final Node node = entry.getValue();
+                if (node.isClosed()) {
+                    continue;
+                }
+                newSamples.add(new Sample(now, entry.getKey(), sampleNode(node)));
+            }
+            newSamples.add(new Sample(now, JVM, sampleJvm(now)));
+            synchronized (samples) {
+                for (final Sample sample : newSamples) {
+                    if (samples.size() >= capacity) {
+                        samples.removeFirst();
+                    }
+                    samples.addLast(sample);
+                }
+            }
+        } catch (final Exception e) {
+            logger.debug("Failed to sample telemetry.", e);
+        }
+    }
+
+    protected Map<String, Long> sampleNode(final Node node) {
+        final Map<String, Long> metrics = new LinkedHashMap<>();
+        final ThreadPool threadPool = node.injector().getInstance(ThreadPool.class);
+        for (final String name : THREAD_POOLS) {
+            if (threadPool.executor(name) instanceof final ThreadPoolExecutor executor) {
+                metrics.put("thread_pool." + name + ".threads", (long) executor.getPoolSize());
+                metrics.put("thread_pool." + name + ".active", (long) executor.getActiveCount());
+                metrics.put("thread_pool." + name + ".queue", (long) executor.getQueue().size());
+                metrics.put("thread_pool." + name + ".completed", executor.getCompletedTaskCount());
+                if (executor.getRejectedExecutionHandler() instanceof final EsRejectedExecutionHandler handler) {
+                    metrics.put("thread_pool." + name + ".rejected", handler.rejected());
+                }
+            }
+        }
+        final CircuitBreakerService circuitBreakerService = node.injector().getInstance(CircuitBreakerService.class);
+        for (final CircuitBreakerStats stats : circuitBreakerService.stats().getAllStats()) {
+            metrics.put("breaker." + stats.getName() + ".estimated", stats.getEstimated());
+            metrics.put("breaker." + stats.getName() + ".limit", stats.getLimit());
+            metrics.put("breaker." + stats.getName() + ".tripped", stats.getTrippedCount());
+        }
+        final IndexingPressureStats pressureStats = node.injector().getInstance(IndexingPressure.class).stats();
+        metrics.put("indexing_pressure.coordinating_and_primary_bytes", pressureStats.getCurrentCombinedCoordinatingAndPrimaryBytes());
+        metrics.put("indexing_pressure.replica_bytes", pressureStats.getCurrentReplicaBytes());
+        metrics.put("indexing_pressure.rejections", pressureStats.getCoordinatingRejections() + pressureStats.getPrimaryRejections()
+                + pressureStats.getReplicaRejections());
+        return metrics;
+    }
+
+    protected Map<String, Long> sampleJvm(final long now) {
+        final Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("heap.used", ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        long gcCount = 0;
+        long gcTime = 0;
+        for (final GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, gcBean.getCollectionCount());
+            gcTime += Math.max(0, gcBean.getCollectionTime());
+        }
+        metrics.put("gc.count", gcCount);
+        metrics.put("gc.time", gcTime);
+        metrics.put("threads", (long) ManagementFactory.getThreadMXBean().getThreadCount());
+        if (ManagementFactory.getThreadMXBean() instanceof final com.sun.management.ThreadMXBean threadBean
+                && threadBean.isThreadAllocatedMemoryEnabled()) {
+            long allocatedBytes = 0;
+            for (final long bytes : threadBean.getThreadAllocatedBytes(threadBean.getAllThreadIds())) {
+                allocatedBytes += Math.max(0, bytes);
+            }
+            if (lastAllocatedBytes >= 0 && now > lastSampleTime) {
+                // bytes of terminated threads are lost, so the rate is a lower bound
+                metrics.put("allocation_rate", Math.max(0, allocatedBytes - lastAllocatedBytes) * 1000 / (now - lastSampleTime));
+            }
+            lastAllocatedBytes = allocatedBytes;
+        }
+        lastSampleTime = now;
+        return metrics;
+    }
+
+    /**
+     * @return a copy of buffered samples
+     */
+    public List<Sample> getSamples() {
+        synchronized (samples) {
+            return new ArrayList<>(samples);
+        }
+    }
+
+    /**
+     * Write samples as CSV with timestamp,node,metric,value columns.
+     *
+     * @param path an output file
+     * @throws IOException if the file cannot be written
+     */
+    public void exportCsv(final Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("timestamp,node,metric,value\n");
+            for (final Sample sample : getSamples()) {
+                for (final Map.Entry<String, Long> entry : sample.getMetrics().entrySet()) {
+                    writer.write(sample.getTimestamp() + "," + sample.getNodeName() + "," + entry.getKey() + "," + entry.getValue() + "\n");
+                }
+            }
+        }
+    }
+
+    /**
+     * Write samples as a JSON array.
+     *
+     * @param path an output file
+     * @throws IOException if the file cannot be written
+     */
+    public void exportJson(final Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path); XContentBuilder builder = XContentFactory.jsonBuilder(out)) {
+            builder.startArray();
+            for (final Sample sample : getSamples()) {
+                builder.startObject().field("timestamp", sample.getTimestamp()).field("node", sample.getNodeName()).startObject("metrics");
+                for (final Map.Entry<String, Long> entry : sample.getMetrics().entrySet()) {
+                    builder.field(entry.getKey(), entry.getValue());
+                }
+                builder.endObject().endObject();
+            }
+            builder.endArray();
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Metrics of a node, or of the JVM, at a point of time.
+     */
+    public static class Sample {
+        private final long timestamp;
+
+        private final String nodeName;
+
+        private final Map<String, Long> metrics;
+
+        public Sample(final long timestamp, final String nodeName, final Map<String, Long> metrics) {
+            this.timestamp = timestamp;
+            this.nodeName = nodeName;
+            this.metrics = Collections.unmodifiableMap(metrics);
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return a node name, or "jvm" for JVM-wide metrics
+         */
+        public String getNodeName() {
+            return nodeName;
+        }
+
+        public Map<String, Long> getMetrics() {
+            return metrics;
+        }
+    }
+}
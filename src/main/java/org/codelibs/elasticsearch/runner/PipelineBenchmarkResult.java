@@ -0,0 +1,197 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.ingest.IngestStats;
+
+/**
+ * Ingest throughput of a pipeline and time spent by each processor while documents are indexed.
+ */
+public class PipelineBenchmarkResult {
+
+    private final String pipeline;
+
+    private final long numOfDocs;
+
+    private final long elapsedMillis;
+
+    private final List<ProcessorStats> processorStats;
+
+    public PipelineBenchmarkResult(final String pipeline, final long numOfDocs, final long elapsedMillis,
+            final List<ProcessorStats> processorStats) {
+        this.pipeline = pipeline;
+        this.numOfDocs = numOfDocs;
+        this.elapsedMillis = elapsedMillis;
+        this.processorStats = Collections.unmodifiableList(processorStats);
+    }
+
+    /**
+     * Sum processor statistics of a pipeline over nodes.
+     * Processors are identified by their position in the pipeline.
+     *
+     * @param pipeline a pipeline id
+     * @param ingestStats ingest statistics of nodes
+     * @return processor statistics in pipeline order
+     */
+    public static List<ProcessorStats> sumProcessorStats(final String pipeline, final Collection<IngestStats> ingestStats) {
+        final Map<Integer, ProcessorStats> statsMap = new LinkedHashMap<>();
+        for (final IngestStats nodeStats : ingestStats) {
+            final List<IngestStats.ProcessorStat> processors = nodeStats.processorStats().get(pipeline);
+            if (processors == null) {
+                continue;
+            }
+            for (int i = 0; i < processors.size(); i++) {
+                final IngestStats.ProcessorStat processor = processors.get(i);
+                final ProcessorStats current = new ProcessorStats(i, processor.name(), processor.type(), processor.stats().ingestCount(),
+                        processor.stats().ingestTimeInMillis(), processor.stats().ingestFailedCount());
+                statsMap.merge(i, current, ProcessorStats::add);
+            }
+        }
+        return new ArrayList<>(statsMap.values());
+    }
+
+    /**
+     * Return processor statistics between two captures.
+     *
+     * @param before statistics before indexing
+     * @param after statistics after indexing
+     * @return differences in pipeline order
+     */
+    public static List<ProcessorStats> diff(final List<ProcessorStats> before, final List<ProcessorStats> after) {
+        final List<ProcessorStats> list = new ArrayList<>();
+        for (final ProcessorStats stats : after) {
+            final ProcessorStats previous = before.stream().filter(s -> s.position == stats.position).findFirst().orElse(null);
+            list.add(previous == null ? stats
+                    : new ProcessorStats(stats.position, stats.name, stats.type, stats.count - previous.count,
+                            stats.timeMillis - previous.timeMillis, stats.failed - previous.failed));
+        }
+        return list;
+    }
+
+    public String getPipeline() {
+        return pipeline;
+    }
+
+    public long getNumOfDocs() {
+        return numOfDocs;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public long getDocsPerSecond() {
+        return elapsedMillis > 0 ? numOfDocs * 1000 / elapsedMillis : 0;
+    }
+
+    public List<ProcessorStats> getProcessorStats() {
+        return processorStats;
+    }
+
+    /**
+     * @return the processor which spent the most time, or null if no processor ran
+     */
+    public ProcessorStats getBottleneck() {
+        return processorStats.stream().max(Comparator.comparingLong(ProcessorStats::getTimeMillis)).orElse(null);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder();
+        buf.append("pipeline ").append(pipeline).append(": ").append(numOfDocs).append(" docs in ").append(elapsedMillis).append("ms (")
+                .append(getDocsPerSecond()).append(" docs/s)");
+        final long totalMillis = processorStats.stream().mapToLong(ProcessorStats::getTimeMillis).sum();
+        processorStats.stream().sorted(Comparator.comparingLong(ProcessorStats::getTimeMillis).reversed()).forEach(stats -> {
+            buf.append("\n  ").append(stats);
+            if (totalMillis > 0) {
+                buf.append(" (").append(stats.timeMillis * 100 / totalMillis).append("%)");
+            }
+        });
+        return buf.toString();
+    }
+
+    /**
+     * Statistics of a processor summed over nodes.
+     */
+    public static class ProcessorStats {
+        private final int position;
+
+        private final String name;
+
+        private final String type;
+
+        private final long count;
+
+        private final long timeMillis;
+
+        private final long failed;
+
+        public ProcessorStats(final int position, final String name, final String type, final long count, final long timeMillis,
+                final long failed) {
+            this.position = position;
+            this.name = name;
+            this.type = type;
+            this.count = count;
+            this.timeMillis = timeMillis;
+            this.failed = failed;
+        }
+
+        ProcessorStats add(final ProcessorStats other) {
+            return new ProcessorStats(position, name, type, count + other.count, timeMillis + other.timeMillis, failed + other.failed);
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        /**
+         * @return a processor tag, or a type if no tag is set
+         */
+        public String getName() {
+            return name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + position + "] " + name + "(" + type + "): count=" + count + ", time=" + timeMillis + "ms, failed=" + failed;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.elasticsearch.index.reindex.BulkByScrollResponse;
+import org.elasticsearch.index.reindex.BulkByScrollTask;
+import org.elasticsearch.tasks.TaskInfo;
+
+/**
+ * Progress of a reindex task, taken from the task management API or the final response.
+ */
+public class ReindexProgress {
+
+    private final String taskId;
+
+    private final boolean completed;
+
+    private final long total;
+
+    private final long created;
+
+    private final long updated;
+
+    private final long deleted;
+
+    private final long versionConflicts;
+
+    private final long batches;
+
+    private final float requestsPerSecond;
+
+    private final long runningTimeNanos;
+
+    private final List<?> failures;
+
+    public ReindexProgress(final String taskId, final boolean completed, final long total, final long created, final long updated,
+            final long deleted, final long versionConflicts, final long batches, final float requestsPerSecond, final long runningTimeNanos,
+            final List<?> failures) {
+        this.taskId = taskId;
+        this.completed = completed;
+        this.total = total;
+        this.created = created;
+        this.updated = updated;
+        this.deleted = deleted;
+        this.versionConflicts = versionConflicts;
+        this.batches = batches;
+        this.requestsPerSecond = requestsPerSecond;
+        this.runningTimeNanos = runningTimeNanos;
+        this.failures = failures;
+    }
+
+    /**
+     * Create progress of a running task.
+     *
+     * @param taskId a task id
+     * @param taskInfo a task
+     * @return reindex progress
+     */
+    public static ReindexProgress of(final String taskId, final TaskInfo taskInfo) {
+        if (taskInfo.status() instanceof final BulkByScrollTask.Status status) {
+            return of(taskId, false, status, taskInfo.runningTimeNanos(), Collections.emptyList());
+        }
+        return new ReindexProgress(taskId, false, 0, 0, 0, 0, 0, 0, -1, taskInfo.runningTimeNanos(), Collections.emptyList());
+    }
+
+    /**
+     * Create progress of a completed task.
+     *
+     * @param taskId a task id
+     * @param response a reindex response
+     * @return reindex progress
+     */
+    public static ReindexProgress of(final String taskId, final BulkByScrollResponse response) {
+        final List<Object> failures = new ArrayList<>();
+        failures.addAll(response.getBulkFailures());
+        failures.addAll(response.getSearchFailures());
+        return of(taskId, true, response.getStatus(), response.getTook().nanos(), failures);
+    }
+
+    private static ReindexProgress of(final String taskId, final boolean completed, final BulkByScrollTask.Status status,
+            final long runningTimeNanos, final List<?> failures) {
+        final float requestsPerSecond = Float.isInfinite(status.getRequestsPerSecond()) ? -1 : status.getRequestsPerSecond();
+        return new ReindexProgress(taskId, completed, status.getTotal(), status.getCreated(), status.getUpdated(), status.getDeleted(),
+                status.getVersionConflicts(), status.getBatches(), requestsPerSecond, runningTimeNanos, failures);
+    }
+
+    public String getTaskId() {
+        return taskId;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getUpdated() {
+        return updated;
+    }
+
+    public long getDeleted() {
+        return deleted;
+    }
+
+    public long getVersionConflicts() {
+        return versionConflicts;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    /**
+     * @return a throttle of the task, or -1 if it is unlimited
+     */
+    public float getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public long getRunningTimeNanos() {
+        return runningTimeNanos;
+    }
+
+    public List<?> getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return the number of created, updated and deleted documents
+     */
+    public long getProcessed() {
+        return created + updated + deleted;
+    }
+
+    public long getDocsPerSecond() {
+        return runningTimeNanos > 0 ? getProcessed() * 1000000000L / runningTimeNanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "reindex " + taskId + ": " + getProcessed() + "/" + total + " docs, " + batches + " batches, " + getDocsPerSecond()
+                + " docs/s, requests_per_second=" + requestsPerSecond + (completed ? ", completed" : "");
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner;
+
+import java.util.function.Supplier;
+
+import org.codelibs.elasticsearch.runner.FlightRecorderSession.RunnerCallEvent;
+
+/**
+ * RunnerCall is the outermost runner helper call in progress on a thread.
+ * It is recorded in a slow call log and as a JFR event if they are enabled.
+ */
+public class RunnerCall implements AutoCloseable {
+
+    private final ThreadLocal<RunnerCall> currentCall;
+
+    private final SlowCallLog.Call slowCall;
+
+    private final RunnerCallEvent event;
+
+    /**
+     * @param currentCall a holder of the call on this thread, which is cleared on close()
+     * @param slowCall a slow log call, or null
+     * @param event a started JFR event, or null
+     */
+    public RunnerCall(final ThreadLocal<RunnerCall> currentCall, final SlowCallLog.Call slowCall, final RunnerCallEvent event) {
+        this.currentCall = currentCall;
+        this.slowCall = slowCall;
+        this.event = event;
+    }
+
+    /**
+     * @param source a request source, which is evaluated only for a slow call
+     * @return this call
+     */
+    public RunnerCall source(final Supplier<String> source) {
+        if (slowCall != null) {
+            slowCall.source(source);
+        }
+        return this;
+    }
+
+    @Override
+    public void close() {
+        currentCall.remove();
+        if (slowCall != null) {
+            slowCall.close();
+        }
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.commit();
+            }
+        }
+    }
+}
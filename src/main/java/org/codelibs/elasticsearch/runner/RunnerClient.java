@@ -0,0 +1,73 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner;
+
+import org.codelibs.elasticsearch.runner.FlightRecorderSession.ActionEvent;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.ActionType;
+import org.elasticsearch.client.internal.Client;
+import org.elasticsearch.client.internal.FilterClient;
+
+/**
+ * RunnerClient records each transport action executed through a node client of a cluster runner as a JFR event.
+ */
+public class RunnerClient extends FilterClient {
+
+    private final String nodeName;
+
+    /**
+     * @param in a node client
+     * @param nodeName a name of the node
+     */
+    public RunnerClient(final Client in, final String nodeName) {
+        super(in);
+        this.nodeName = nodeName;
+    }
+
+    @Override
+    protected <Request extends ActionRequest, Response extends ActionResponse> void doExecute(final ActionType<Response> action,
+            final Request request, final ActionListener<Response> listener) {
+        final ActionEvent event = new ActionEvent();
+        event.begin();
+        super.doExecute(action, request, new ActionListener<Response>() {
+            @Override
+            public void onResponse(final Response response) {
+                complete(true);
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(final Exception e) {
+                complete(false);
+                listener.onFailure(e);
+            }
+
+            private void complete(final boolean success) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.nodeName = nodeName;
+                    event.action = action.name();
+                    event.request = request.getDescription();
+                    event.success = success;
+                    event.commit();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * SlowCallLog keeps runner helper calls which took longer than a threshold and the slowest N of them.
+ * Only the outermost helper call on a thread is recorded, so a helper which calls other helpers is logged once.
+ */
+public class SlowCallLog {
+
+    private static final Logger logger = LogManager.getLogger(SlowCallLog.class);
+
+    private final long thresholdNanos;
+
+    private final int topN;
+
+    private final boolean includeSource;
+
+    private final PriorityQueue<SlowCall> slowest;
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+
+    /**
+     * @param thresholdMillis a latency to record a call
+     * @param topN the number of the slowest calls to keep
+     * @param includeSource true if a request source is recorded
+     */
+    public SlowCallLog(final long thresholdMillis, final int topN, final boolean includeSource) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.topN = topN;
+        this.includeSource = includeSource;
+        this.slowest = new PriorityQueue<>(topN + 1, Comparator.comparingLong(SlowCall::getTookNanos));
+    }
+
+    /**
+     * Record a call if it is slow.
+     *
+     * @param method a called method or action
+     * @param index target indices
+     * @param nodeName a node used for the call
+     * @param tookNanos a duration of the call
+     * @param source a request source, which is evaluated only for a slow call
+     */
+    public void record(final String method, final String index, final String nodeName, final long tookNanos,
+            final Supplier<String> source) {
+        if (tookNanos < thresholdNanos) {
+            return;
+        }
+        count.incrementAndGet();
+        final SlowCall call = new SlowCall(method, index, nodeName, tookNanos, includeSource ? source.get() : null);
+        if (logger.isWarnEnabled()) {
+            logger.warn("Slow call: {}", call);
+        }
+        synchronized (slowest) {
+            slowest.add(call);
+            if (slowest.size() > topN) {
+                slowest.poll();
+            }
+        }
+    }
+
+    /**
+     * Start timing a helper call, which is recorded on close() if it is the outermost call on this thread.
+     *
+     * @param method a called method
+     * @param index target indices, or null
+     * @param nodeName a node used for the call
+     * @return a call to close
+     */
+    public Call start(final String method, final String index, final String nodeName) {
+        depth.get()[0]++;
+        return new Call(method, index, nodeName);
+    }
+
+    /**
+     * @return the number of slow calls
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return the slowest calls in descending order of duration
+     */
+    public List<SlowCall> getSlowestCalls() {
+        final List<SlowCall> list;
+        synchronized (slowest) {
+            list = new ArrayList<>(slowest);
+        }
+        list.sort(Comparator.comparingLong(SlowCall::getTookNanos).reversed());
+        return list;
+    }
+
+    /**
+     * A helper call in progress.
+     */
+    public class Call implements AutoCloseable {
+        private final String method;
+
+        private final String index;
+
+        private final String nodeName;
+
+        private final long startTime = System.nanoTime();
+
+        private Supplier<String> source = () -> null;
+
+        Call(final String method, final String index, final String nodeName) {
+            this.method = method;
+            this.index = index;
+            this.nodeName = nodeName;
+        }
+
+        /**
+         * @param source a request source, which is evaluated only for a slow call
+         * @return this call
+         */
+        public Call source(final Supplier<String> source) {
+            this.source = source;
+            return this;
+        }
+
+        @Override
+        public void close() {
+            final int[] current = depth.get();
+            current[0]--;
+            if (current[0] == 0) {
+                record(method, index, nodeName, System.nanoTime() - startTime, source);
+            }
+        }
+    }
+
+    public static class SlowCall {
+        private final String method;
+
+        private final String index;
+
+        private final String nodeName;
+
+        private final long tookNanos;
+
+        private final String source;
+
+        public SlowCall(final String method, final String index, final String nodeName, final long tookNanos, final String source) {
+            this.method = method;
+            this.index = index;
+            this.nodeName = nodeName;
+            this.tookNanos = tookNanos;
+            this.source = source;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getIndex() {
+            return index;
+        }
+
+        public String getNodeName() {
+            return nodeName;
+        }
+
+        public long getTookNanos() {
+            return tookNanos;
+        }
+
+        /**
+         * @return a request source, or null if it is not recorded
+         */
+        public String getSource() {
+            return source;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder buf = new StringBuilder();
+            buf.append(TimeUnit.NANOSECONDS.toMillis(tookNanos)).append("ms ").append(method);
+            if (index != null) {
+                buf.append(" index=").append(index);
+            }
+            buf.append(" node=").append(nodeName);
+            if (source != null) {
+                buf.append(" source=").append(source);
+            }
+            return buf.toString();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.action.admin.cluster.snapshots.status.SnapshotIndexShardStatus;
+import org.elasticsearch.action.admin.cluster.snapshots.status.SnapshotIndexStatus;
+import org.elasticsearch.action.admin.cluster.snapshots.status.SnapshotStats;
+import org.elasticsearch.action.admin.cluster.snapshots.status.SnapshotStatus;
+import org.elasticsearch.cluster.routing.RecoverySource;
+import org.elasticsearch.indices.recovery.RecoveryState;
+
+/**
+ * The result of a snapshot or restore, with transferred bytes and times per shard.
+ */
+public class SnapshotResult {
+
+    private final String operation;
+
+    private final String snapshot;
+
+    private final long bytes;
+
+    private final long elapsedMillis;
+
+    private final List<ShardResult> shardResults;
+
+    public SnapshotResult(final String operation, final String snapshot, final long bytes, final long elapsedMillis,
+            final List<ShardResult> shardResults) {
+        this.operation = operation;
+        this.snapshot = snapshot;
+        this.bytes = bytes;
+        this.elapsedMillis = elapsedMillis;
+        this.shardResults = Collections.unmodifiableList(shardResults);
+    }
+
+    /**
+     * Create a result from a snapshot status.
+     * Bytes are incremental bytes which are copied by the snapshot.
+     *
+     * @param snapshot a snapshot name
+     * @param status a snapshot status
+     * @return snapshot result
+     */
+    public static SnapshotResult ofSnapshotStatus(final String snapshot, final SnapshotStatus status) {
+        final List<ShardResult> shardResults = new ArrayList<>();
+        for (final Map.Entry<String, SnapshotIndexStatus> index : status.getIndices().entrySet()) {
+            for (final Map.Entry<Integer, SnapshotIndexShardStatus> shard : index.getValue().getShards().entrySet()) {
+                final SnapshotStats shardStats = shard.getValue().getStats();
+                shardResults.add(new ShardResult(index.getKey() + "[" + shard.getKey() + "]", shardStats.getIncrementalSize(),
+                        shardStats.getTime()));
+            }
+        }
+        return new SnapshotResult("snapshot", snapshot, status.getStats().getIncrementalSize(), status.getStats().getTime(),
+                shardResults);
+    }
+
+    /**
+     * Create a result from shard recoveries. Only recoveries from a snapshot are counted.
+     *
+     * @param snapshot a snapshot name
+     * @param elapsedMillis time to restore
+     * @param recoveries recovery states per index
+     * @return restore result
+     */
+    public static SnapshotResult ofRecoveries(final String snapshot, final long elapsedMillis,
+            final Map<String, List<RecoveryState>> recoveries) {
+        final List<ShardResult> shardResults = new ArrayList<>();
+        for (final Map.Entry<String, List<RecoveryState>> index : recoveries.entrySet()) {
+            for (final RecoveryState recoveryState : index.getValue()) {
+                if (recoveryState.getRecoverySource().getType() == RecoverySource.Type.SNAPSHOT) {
+                    shardResults.add(new ShardResult(index.getKey() + "[" + recoveryState.getShardId().id() + "]",
+                            recoveryState.getIndex().recoveredBytes(), recoveryState.getTimer().time()));
+                }
+            }
+        }
+        return new SnapshotResult("restore", snapshot, shardResults.stream().mapToLong(ShardResult::getBytes).sum(), elapsedMillis,
+                shardResults);
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getSnapshot() {
+        return snapshot;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return throughput in bytes per second
+     */
+    public long getBytesPerSecond() {
+        return elapsedMillis > 0 ? bytes * 1000 / elapsedMillis : 0;
+    }
+
+    public List<ShardResult> getShardResults() {
+        return shardResults;
+    }
+
+    @Override
+    public String toString() {
+        return operation + " " + snapshot + ": " + bytes + " bytes in " + elapsedMillis + "ms (" + getBytesPerSecond() + " bytes/s), shards "
+                + shardResults;
+    }
+
+    /**
+     * Transferred bytes and time of a shard.
+     */
+    public static class ShardResult {
+        private final String shard;
+
+        private final long bytes;
+
+        private final long elapsedMillis;
+
+        public ShardResult(final String shard, final long bytes, final long elapsedMillis) {
+            this.shard = shard;
+            this.bytes = bytes;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * @return a shard as "index[id]"
+         */
+        public String getShard() {
+            return shard;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return shard + "=" + bytes + "b/" + elapsedMillis + "ms";
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner;
+
+/**
+ * The result of {@link ElasticsearchClusterRunner#warmup()}.
+ */
+public class WarmupResult {
+
+    private final int rounds;
+
+    private final boolean steadyState;
+
+    private final long elapsedMillis;
+
+    private final double firstRoundMillis;
+
+    private final double lastRoundMillis;
+
+    public WarmupResult(final int rounds, final boolean steadyState, final long elapsedMillis, final double firstRoundMillis,
+            final double lastRoundMillis) {
+        this.rounds = rounds;
+        this.steadyState = steadyState;
+        this.elapsedMillis = elapsedMillis;
+        this.firstRoundMillis = firstRoundMillis;
+        this.lastRoundMillis = lastRoundMillis;
+    }
+
+    /**
+     * @return the number of executed rounds
+     */
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * @return true if latency leveled off before the round limit
+     */
+    public boolean isSteadyState() {
+        return steadyState;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getFirstRoundMillis() {
+        return firstRoundMillis;
+    }
+
+    public double getLastRoundMillis() {
+        return lastRoundMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "WarmupResult [rounds=" + rounds + ", steadyState=" + steadyState + ", elapsedMillis=" + elapsedMillis
+                + ", firstRoundMillis=" + firstRoundMillis + ", lastRoundMillis=" + lastRoundMillis + "]";
+    }
+}
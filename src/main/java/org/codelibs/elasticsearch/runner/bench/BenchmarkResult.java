@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner.bench;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Latency statistics of a benchmark scenario.
+ */
+public class BenchmarkResult {
+
+    private final String name;
+
+    private final int iterations;
+
+    private final double meanMillis;
+
+    private final double p50Millis;
+
+    private final double p90Millis;
+
+    private final double p99Millis;
+
+    private final double maxMillis;
+
+    public BenchmarkResult(final String name, final int iterations, final double meanMillis, final double p50Millis,
+            final double p90Millis, final double p99Millis, final double maxMillis) {
+        this.name = name;
+        this.iterations = iterations;
+        this.meanMillis = meanMillis;
+        this.p50Millis = p50Millis;
+        this.p90Millis = p90Millis;
+        this.p99Millis = p99Millis;
+        this.maxMillis = maxMillis;
+    }
+
+    /**
+     * Create a result from latencies in nanoseconds.
+     *
+     * @param name a scenario name
+     * @param latencies latencies in nanoseconds
+     * @return benchmark result
+     */
+    public static BenchmarkResult of(final String name, final long[] latencies) {
+        if (latencies.length == 0) {
+            return new BenchmarkResult(name, 0, 0, 0, 0, 0, 0);
+        }
+        final long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        double sum = 0;
+        for (final long latency : sorted) {
+            sum += latency;
+        }
+        return new BenchmarkResult(name, sorted.length, sum / sorted.length / 1000000.0, percentile(sorted, 0.5),
+                percentile(sorted, 0.9), percentile(sorted, 0.99), sorted[sorted.length - 1] / 1000000.0);
+    }
+
+    private static double percentile(final long[] sorted, final double p) {
+        final int pos = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(pos, sorted.length - 1))] / 1000000.0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP90Millis() {
+        return p90Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%-20s iterations=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms", name, iterations,
+                meanMillis, p50Millis, p90Millis, p99Millis, maxMillis);
+    }
+}
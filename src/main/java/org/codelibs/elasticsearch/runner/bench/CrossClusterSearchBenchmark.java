@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner;
+import org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner.BuilderCallback;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+
+/**
+ * CrossClusterSearchBenchmark compares cross-cluster search latency
+ * with and without ccs_minimize_roundtrips.
+ */
+public class CrossClusterSearchBenchmark {
+
+    private final ElasticsearchClusterRunner runner;
+
+    private int iterations = 100;
+
+    private int warmupIterations = 20;
+
+    /**
+     * @param runner a runner connected to remote clusters
+     */
+    public CrossClusterSearchBenchmark(final ElasticsearchClusterRunner runner) {
+        this.runner = runner;
+    }
+
+    public CrossClusterSearchBenchmark iterations(final int iterations) {
+        this.iterations = iterations;
+        return this;
+    }
+
+    public CrossClusterSearchBenchmark warmupIterations(final int warmupIterations) {
+        this.warmupIterations = warmupIterations;
+        return this;
+    }
+
+    /**
+     * Run a search with and without ccs_minimize_roundtrips.
+     *
+     * @param index index expressions such as "index,remote1:index,remote2:index"
+     * @param builder a search request builder callback
+     * @return results named "minimize_roundtrips" and "no_minimize_roundtrips"
+     */
+    public List<BenchmarkResult> run(final String index, final BuilderCallback<SearchRequestBuilder> builder) {
+        final List<BenchmarkResult> results = new ArrayList<>();
+        for (final boolean minimizeRoundtrips : new boolean[] { true, false }) {
+            for (int i = 0; i < warmupIterations; i++) {
+                runner.crossClusterSearch(index, minimizeRoundtrips, builder).decRef();
+            }
+            final long[] latencies = new long[iterations];
+            for (int i = 0; i < iterations; i++) {
+                final long startTime = System.nanoTime();
+                final SearchResponse response = runner.crossClusterSearch(index, minimizeRoundtrips, builder);
+                latencies[i] = System.nanoTime() - startTime;
+                response.decRef();
+            }
+            final BenchmarkResult result =
+                    BenchmarkResult.of(minimizeRoundtrips ? "minimize_roundtrips" : "no_minimize_roundtrips", latencies);
+            runner.print(result.toString());
+            results.add(result);
+        }
+        return results;
+    }
+}
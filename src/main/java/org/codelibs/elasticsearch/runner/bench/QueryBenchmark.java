@@ -0,0 +1,405 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.apache.lucene.search.join.ScoreMode;
+import org.codelibs.elasticsearch.runner.ClusterRunnerException;
+import org.codelibs.elasticsearch.runner.CpuUsageSnapshot;
+import org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner;
+import org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner.BuilderCallback;
+import org.codelibs.elasticsearch.runner.data.DocumentGenerator;
+import org.elasticsearch.Build;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.LoggingDeprecationHandler;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.join.query.JoinQueryBuilders;
+import org.elasticsearch.percolator.PercolateQueryBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.composite.TermsValuesSourceBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.xcontent.NamedXContentRegistry;
+import org.elasticsearch.xcontent.XContentBuilder;
+import org.elasticsearch.xcontent.XContentFactory;
+import org.elasticsearch.xcontent.XContentParser;
+import org.elasticsearch.xcontent.XContentType;
+import org.elasticsearch.xcontent.json.JsonXContent;
+
+/**
+ * QueryBenchmark runs standard query and aggregation scenarios on a cluster runner.
+ * Results are stored as a JSON file named by the Elasticsearch version and the timestamp
+ * of a run, and compared with the latest result of another version.
+ */
+public class QueryBenchmark {
+
+    public static final String DOCS_INDEX = "bench_docs";
+
+    public static final String JOIN_INDEX = "bench_join";
+
+    public static final String PERCOLATOR_INDEX = "bench_percolator";
+
+    protected final ElasticsearchClusterRunner runner;
+
+    private final Map<String, Scenario> scenarioMap = new LinkedHashMap<>();
+
+    private long numOfDocs = 100000;
+
+    private int iterations = 100;
+
+    private int warmupIterations = 20;
+
+    private long seed = 1L;
+
+    private Path resultPath;
+
+    private double regressionThreshold = 0.1;
+
+    public QueryBenchmark(final ElasticsearchClusterRunner runner) {
+        this.runner = runner;
+        addDefaultScenarios();
+    }
+
+    public QueryBenchmark numOfDocs(final long numOfDocs) {
+        this.numOfDocs = numOfDocs;
+        return this;
+    }
+
+    public QueryBenchmark iterations(final int iterations) {
+        this.iterations = iterations;
+        return this;
+    }
+
+    public QueryBenchmark warmupIterations(final int warmupIterations) {
+        this.warmupIterations = warmupIterations;
+        return this;
+    }
+
+    public QueryBenchmark seed(final long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @param resultPath a directory to store results as &lt;version&gt;_&lt;timestamp&gt;.json
+     * @return this instance
+     */
+    public QueryBenchmark resultPath(final Path resultPath) {
+        this.resultPath = resultPath;
+        return this;
+    }
+
+    /**
+     * @param regressionThreshold relative p50 growth reported as a regression
+     * @return this instance
+     */
+    public QueryBenchmark regressionThreshold(final double regressionThreshold) {
+        this.regressionThreshold = regressionThreshold;
+        return this;
+    }
+
+    public QueryBenchmark addScenario(final String name, final String index, final BuilderCallback<SearchRequestBuilder> builder) {
+        scenarioMap.put(name, new Scenario(index, builder));
+        return this;
+    }
+
+    public QueryBenchmark removeScenario(final String name) {
+        scenarioMap.remove(name);
+        return this;
+    }
+
+    protected void addDefaultScenarios() {
+        final String word = DocumentGenerator.createWord(0);
+        addScenario("term", DOCS_INDEX, builder -> builder.setQuery(QueryBuilders.termQuery("tag", "tag_1")));
+        addScenario("match", DOCS_INDEX, builder -> builder.setQuery(QueryBuilders.matchQuery("msg", word)));
+        addScenario("range", DOCS_INDEX, builder -> builder.setQuery(QueryBuilders.rangeQuery("value").gte(0).lt(100000000)));
+        addScenario("terms_agg", DOCS_INDEX,
+                builder -> builder.setSize(0).addAggregation(AggregationBuilders.terms("tags").field("tag").size(20)));
+        addScenario("date_histogram", DOCS_INDEX, builder -> builder.setSize(0)
+                .addAggregation(AggregationBuilders.dateHistogram("months").field("@timestamp").calendarInterval(DateHistogramInterval.MONTH)));
+        addScenario("composite", DOCS_INDEX, builder -> builder.setSize(0).addAggregation(
+                AggregationBuilders.composite("tags", List.of(new TermsValuesSourceBuilder("tag").field("tag"))).size(100)));
+        addScenario("sort_doc_values", DOCS_INDEX,
+                builder -> builder.setQuery(QueryBuilders.matchAllQuery()).addSort(SortBuilders.fieldSort("value").order(SortOrder.DESC)));
+        addScenario("nested", DOCS_INDEX, builder -> builder
+                .setQuery(QueryBuilders.nestedQuery("comments", QueryBuilders.termQuery("comments.author", "author_1"), ScoreMode.Avg)));
+        addScenario("has_child", JOIN_INDEX,
+                builder -> builder.setQuery(JoinQueryBuilders.hasChildQuery("answer", QueryBuilders.matchAllQuery(), ScoreMode.None)));
+        addScenario("percolate", PERCOLATOR_INDEX, builder -> builder.setQuery(new PercolateQueryBuilder("query",
+                new BytesArray("{\"msg\":\"" + word + " " + DocumentGenerator.createWord(1) + "\"}"), XContentType.JSON)));
+        addScenario("runtime_field", DOCS_INDEX,
+                builder -> builder.setQuery(QueryBuilders.rangeQuery("value_doubled").gte(0).lt(200000000)));
+    }
+
+    /**
+     * Create indices, run all scenarios and store the results.
+     *
+     * @return benchmark results
+     */
+    public List<BenchmarkResult> run() {
+        setup();
+        final List<BenchmarkResult> results = new ArrayList<>();
+        for (final Map.Entry<String, Scenario> entry : scenarioMap.entrySet()) {
+            final Scenario scenario = entry.getValue();
+            for (int i = 0; i < warmupIterations; i++) {
+                execute(scenario);
+            }
+            final long[] latencies = new long[iterations];
+            final CpuUsageSnapshot cpuUsage = runner.captureCpuUsage();
+            for (int i = 0; i < iterations; i++) {
+                final long startTime = System.nanoTime();
+                execute(scenario);
+                latencies[i] = System.nanoTime() - startTime;
+            }
+            final BenchmarkResult result = BenchmarkResult.of(entry.getKey(), latencies);
+            runner.print(result.toString());
+            runner.print("  " + runner.captureCpuUsage().diff(cpuUsage));
+            results.add(result);
+        }
+        if (resultPath != null) {
+            compare(results);
+            store(results);
+        }
+        return results;
+    }
+
+    protected void execute(final Scenario scenario) {
+        final SearchResponse response = runner.search(scenario.index, scenario.builder);
+        response.decRef();
+    }
+
+    protected void setup() {
+        final Settings indexSettings = Settings.builder().put("index.number_of_shards", Math.max(1, runner.getNodeSize()))
+                .put("index.number_of_replicas", 0).build();
+
+        if (usesIndex(DOCS_INDEX) && !runner.indexExists(DOCS_INDEX)) {
+            runner.createIndex(DOCS_INDEX, builder -> builder.setSettings(indexSettings).setMapping(loadMapping("docs")));
+            runner.generateDocuments(DOCS_INDEX, numOfDocs, seed);
+        }
+
+        if (usesIndex(JOIN_INDEX) && !runner.indexExists(JOIN_INDEX)) {
+            runner.createIndex(JOIN_INDEX, builder -> builder.setSettings(indexSettings).setMapping(loadMapping("join")));
+            final long numOfQuestions = Math.max(1, numOfDocs / 10);
+            BulkRequestBuilder bulkBuilder = runner.client().prepareBulk();
+            for (long i = 0; i < numOfQuestions; i++) {
+                final String parentId = "q" + i;
+                bulkBuilder.add(new IndexRequest(JOIN_INDEX).id(parentId).source("{\"body\":\"question " + i + "\",\"relation\":\"question\"}",
+                        XContentType.JSON));
+                for (int j = 0; j < 5; j++) {
+                    bulkBuilder.add(new IndexRequest(JOIN_INDEX).id("a" + i + "_" + j).routing(parentId)
+                            .source("{\"body\":\"answer " + j + "\",\"relation\":{\"name\":\"answer\",\"parent\":\"" + parentId + "\"}}",
+                                    XContentType.JSON));
+                }
+                if (bulkBuilder.numberOfActions() >= 1000) {
+                    executeBulk(bulkBuilder);
+                    bulkBuilder = runner.client().prepareBulk();
+                }
+            }
+            if (bulkBuilder.numberOfActions() > 0) {
+                executeBulk(bulkBuilder);
+            }
+        }
+
+        if (usesIndex(PERCOLATOR_INDEX) && !runner.indexExists(PERCOLATOR_INDEX)) {
+            runner.createIndex(PERCOLATOR_INDEX, builder -> builder.setSettings(indexSettings).setMapping(loadMapping("percolator")));
+            BulkRequestBuilder bulkBuilder = runner.client().prepareBulk();
+            for (int i = 0; i < 1000; i++) {
+                bulkBuilder.add(new IndexRequest(PERCOLATOR_INDEX).id(String.valueOf(i)).source(
+                        "{\"query\":{\"match\":{\"msg\":\"" + DocumentGenerator.createWord(i) + "\"}}}", XContentType.JSON));
+            }
+            executeBulk(bulkBuilder);
+        }
+
+        final String[] indices = scenarioMap.values().stream().map(scenario -> scenario.index).distinct().toArray(String[]::new);
+        runner.refresh(builder -> builder.setIndices(indices));
+        runner.ensureGreen(indices);
+    }
+
+    protected boolean usesIndex(final String index) {
+        return scenarioMap.values().stream().anyMatch(scenario -> index.equals(scenario.index));
+    }
+
+    private void executeBulk(final BulkRequestBuilder bulkBuilder) {
+        final BulkResponse response = bulkBuilder.execute().actionGet();
+        if (response.hasFailures()) {
+            throw new ClusterRunnerException(response.buildFailureMessage(), response);
+        }
+    }
+
+    protected String loadMapping(final String name) {
+        final String path = "bench/" + name + "_mapping.json";
+        try (InputStream is = Thread.currentThread().getContextClassLoader().getResourceAsStream(path)) {
+            if (is == null) {
+                throw new ClusterRunnerException(path + " is not found.");
+            }
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (final IOException e) {
+            throw new ClusterRunnerException("Failed to load " + path, e);
+        }
+    }
+
+    protected void store(final List<BenchmarkResult> results) {
+        final long timestamp = System.currentTimeMillis();
+        final Path path = resultPath.resolve(Build.current().version() + "_" + timestamp + ".json");
+        try {
+            Files.createDirectories(resultPath);
+            final XContentBuilder builder = XContentFactory.jsonBuilder().prettyPrint();
+            builder.startObject();
+            builder.field("version", Build.current().version());
+            builder.field("timestamp", timestamp);
+            builder.field("num_of_nodes", runner.getNodeSize());
+            builder.field("num_of_docs", numOfDocs);
+            builder.startObject("results");
+            for (final BenchmarkResult result : results) {
+                builder.startObject(result.getName());
+                builder.field("iterations", result.getIterations());
+                builder.field("mean", result.getMeanMillis());
+                builder.field("p50", result.getP50Millis());
+                builder.field("p90", result.getP90Millis());
+                builder.field("p99", result.getP99Millis());
+                builder.field("max", result.getMaxMillis());
+                builder.endObject();
+            }
+            builder.endObject();
+            builder.endObject();
+            Files.writeString(path, Strings.toString(builder), StandardCharsets.UTF_8);
+            runner.print("Stored benchmark results to " + path);
+        } catch (final IOException e) {
+            throw new ClusterRunnerException("Failed to store " + path, e);
+        }
+    }
+
+    /**
+     * Print p50 changes against the latest result of another version.
+     *
+     * @param results current results
+     * @return p50 changes by scenario name
+     */
+    protected Map<String, Double> compare(final List<BenchmarkResult> results) {
+        final Optional<Path> previous = findPrevious(resultPath, Build.current().version());
+        if (previous.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return compare(results, previous.get());
+    }
+
+    /**
+     * Print p50 changes against a stored result.
+     *
+     * @param results current results
+     * @param previousPath a result file to compare with
+     * @return p50 changes by scenario name, such as 0.1 for 10% slower
+     */
+    @SuppressWarnings("unchecked")
+    protected Map<String, Double> compare(final List<BenchmarkResult> results, final Path previousPath) {
+        final Map<String, Object> previousMap;
+        try (XContentParser parser = JsonXContent.jsonXContent.createParser(NamedXContentRegistry.EMPTY,
+                LoggingDeprecationHandler.INSTANCE, Files.newInputStream(previousPath))) {
+            previousMap = parser.map();
+        } catch (final IOException e) {
+            throw new ClusterRunnerException("Failed to read " + previousPath, e);
+        }
+        final Map<String, Object> previousResults = (Map<String, Object>) previousMap.get("results");
+        if (previousResults == null) {
+            return Collections.emptyMap();
+        }
+        final Map<String, Double> changes = new LinkedHashMap<>();
+        runner.print("Compared with " + previousMap.get("version") + ":");
+        for (final BenchmarkResult result : results) {
+            final Map<String, Object> previousResult = (Map<String, Object>) previousResults.get(result.getName());
+            if (previousResult == null || !(previousResult.get("p50") instanceof Number)) {
+                continue;
+            }
+            final double previousP50 = ((Number) previousResult.get("p50")).doubleValue();
+            final double change = previousP50 > 0 ? (result.getP50Millis() - previousP50) / previousP50 : 0;
+            changes.put(result.getName(), change);
+            runner.print(String.format(Locale.ROOT, "%-20s p50 %.3fms -> %.3fms (%+.1f%%)%s", result.getName(), previousP50,
+                    result.getP50Millis(), change * 100, change > regressionThreshold ? " REGRESSION" : ""));
+        }
+        return changes;
+    }
+
+    /**
+     * Find the latest result of another version by the timestamp in its file name.
+     * Files which are not named as &lt;version&gt;_&lt;timestamp&gt;.json are ignored.
+     *
+     * @param resultPath a result directory
+     * @param currentVersion a version to exclude
+     * @return the latest result file
+     */
+    protected static Optional<Path> findPrevious(final Path resultPath, final String currentVersion) {
+        if (resultPath == null || !Files.isDirectory(resultPath)) {
+            return Optional.empty();
+        }
+        try (Stream<Path> stream = Files.list(resultPath)) {
+            Path previous = null;
+            long previousTimestamp = Long.MIN_VALUE;
+            for (final Path path : (Iterable<Path>) stream::iterator) {
+                final String fileName = path.getFileName().toString();
+                final int pos = fileName.lastIndexOf('_');
+                if (!fileName.endsWith(".json") || pos <= 0 || currentVersion.equals(fileName.substring(0, pos))) {
+                    continue;
+                }
+                final long timestamp;
+                try {
+                    timestamp = Long.parseLong(fileName.substring(pos + 1, fileName.length() - ".json".length()));
+                } catch (final NumberFormatException e) {
+                    continue;
+                }
+                if (timestamp > previousTimestamp) {
+                    previous = path;
+                    previousTimestamp = timestamp;
+                }
+            }
+            return Optional.ofNullable(previous);
+        } catch (final IOException e) {
+            throw new ClusterRunnerException("Failed to read " + resultPath, e);
+        }
+    }
+
+    protected static class Scenario {
+        protected final String index;
+
+        protected final BuilderCallback<SearchRequestBuilder> builder;
+
+        protected Scenario(final String index, final BuilderCallback<SearchRequestBuilder> builder) {
+            this.index = index;
+            this.builder = builder;
+        }
+    }
+}
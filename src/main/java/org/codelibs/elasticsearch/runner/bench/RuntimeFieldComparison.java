@@ -0,0 +1,206 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner.bench;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codelibs.elasticsearch.runner.ClusterRunnerException;
+import org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner;
+import org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner.BuilderCallback;
+import org.codelibs.elasticsearch.runner.IndexStatsSnapshot;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.cluster.metadata.MappingMetadata;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.xcontent.XContentBuilder;
+import org.elasticsearch.xcontent.json.JsonXContent;
+
+/**
+ * RuntimeFieldComparison builds a field as a runtime field of an index and as an
+ * indexed field of a reindexed copy, and runs the same searches on both.
+ * The indexed field uses the same script as an index-time script, so values are identical.
+ */
+public class RuntimeFieldComparison {
+
+    private final ElasticsearchClusterRunner runner;
+
+    private final String index;
+
+    private final String field;
+
+    private final String type;
+
+    private final String script;
+
+    private final Map<String, BuilderCallback<SearchRequestBuilder>> scenarioMap = new LinkedHashMap<>();
+
+    private int iterations = 100;
+
+    private int warmupIterations = 20;
+
+    /**
+     * @param runner a cluster runner
+     * @param index a source index
+     * @param field a field name
+     * @param type a field type, such as long, double, keyword or date
+     * @param script a Painless script which emits values, such as "emit(doc['value'].value * 2)"
+     */
+    public RuntimeFieldComparison(final ElasticsearchClusterRunner runner, final String index, final String field, final String type,
+            final String script) {
+        this.runner = runner;
+        this.index = index;
+        this.field = field;
+        this.type = type;
+        this.script = script;
+        addScenario("exists", builder -> builder.setQuery(QueryBuilders.existsQuery(field)));
+        addScenario("sort",
+                builder -> builder.setQuery(QueryBuilders.matchAllQuery()).addSort(SortBuilders.fieldSort(field).order(SortOrder.DESC)));
+        addScenario("terms_agg", builder -> builder.setSize(0).addAggregation(AggregationBuilders.terms("terms").field(field).size(10)));
+        addScenario("cardinality",
+                builder -> builder.setSize(0).addAggregation(AggregationBuilders.cardinality("cardinality").field(field)));
+    }
+
+    public RuntimeFieldComparison iterations(final int iterations) {
+        this.iterations = iterations;
+        return this;
+    }
+
+    public RuntimeFieldComparison warmupIterations(final int warmupIterations) {
+        this.warmupIterations = warmupIterations;
+        return this;
+    }
+
+    public RuntimeFieldComparison addScenario(final String name, final BuilderCallback<SearchRequestBuilder> builder) {
+        scenarioMap.put(name, builder);
+        return this;
+    }
+
+    public RuntimeFieldComparison removeScenario(final String name) {
+        scenarioMap.remove(name);
+        return this;
+    }
+
+    /**
+     * @return the name of a reindexed copy with the indexed field
+     */
+    public String getIndexedIndex() {
+        return index + "_" + field + "_indexed";
+    }
+
+    /**
+     * Build both variants and run all scenarios on them.
+     *
+     * @return results named "runtime.&lt;scenario&gt;" and "indexed.&lt;scenario&gt;"
+     */
+    public List<BenchmarkResult> run() {
+        final String indexedIndex = getIndexedIndex();
+        setup(indexedIndex);
+        final IndexStatsSnapshot stats = runner.captureIndexStats(index, indexedIndex);
+        runner.print("Store size: runtime=" + stats.get(index, IndexStatsSnapshot.Metric.STORE_SIZE) + " bytes, indexed="
+                + stats.get(indexedIndex, IndexStatsSnapshot.Metric.STORE_SIZE) + " bytes");
+
+        final List<BenchmarkResult> results = new ArrayList<>();
+        for (final Map.Entry<String, BuilderCallback<SearchRequestBuilder>> entry : scenarioMap.entrySet()) {
+            results.add(execute("runtime." + entry.getKey(), index, entry.getValue()));
+            results.add(execute("indexed." + entry.getKey(), indexedIndex, entry.getValue()));
+        }
+        return results;
+    }
+
+    protected void setup(final String indexedIndex) {
+        final MappingMetadata mappingMetadata =
+                runner.admin().indices().prepareGetMappings(index).execute().actionGet().mappings().get(index);
+        if (mappingMetadata == null) {
+            throw new ClusterRunnerException("Mapping for " + index + " is not found.");
+        }
+        final Map<String, Object> mapping = new LinkedHashMap<>(mappingMetadata.sourceAsMap());
+
+        if (!runner.indexExists(indexedIndex)) {
+            @SuppressWarnings("unchecked")
+            final Map<String, Object> properties =
+                    new LinkedHashMap<>((Map<String, Object>) mapping.getOrDefault("properties", Map.of()));
+            properties.put(field, Map.of("type", type, "script", Map.of("source", script)));
+            mapping.put("properties", properties);
+            if (mapping.get("runtime") instanceof final Map<?, ?> runtime) {
+                final Map<Object, Object> newRuntime = new LinkedHashMap<>(runtime);
+                newRuntime.remove(field);
+                mapping.put("runtime", newRuntime);
+            }
+            final Settings settings = runner.admin().indices().prepareGetSettings(index).execute().actionGet().getIndexToSettings()
+                    .get(index);
+            runner.createIndex(indexedIndex, builder -> builder.setSettings(Settings.builder()
+                    .put("index.number_of_shards", settings.get("index.number_of_shards"))
+                    .put("index.number_of_replicas", settings.get("index.number_of_replicas"))).setMapping(mapping));
+            runner.reindex(index, indexedIndex);
+        }
+
+        try (final XContentBuilder builder = JsonXContent.contentBuilder()) {
+            builder.startObject().startObject("runtime").startObject(field).field("type", type).startObject("script")
+                    .field("source", script).endObject().endObject().endObject().endObject();
+            runner.createMapping(index, builder);
+        } catch (final IOException e) {
+            throw new ClusterRunnerException("Failed to add a runtime field " + field + " to " + index + ".", e);
+        }
+
+        runner.refresh(builder -> builder.setIndices(index, indexedIndex));
+        runner.ensureGreen(index, indexedIndex);
+    }
+
+    protected BenchmarkResult execute(final String name, final String target, final BuilderCallback<SearchRequestBuilder> builder) {
+        for (int i = 0; i < warmupIterations; i++) {
+            runner.search(target, builder).decRef();
+        }
+        final long[] latencies = new long[iterations];
+        final long allocatedBytes = getAllocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            final long startTime = System.nanoTime();
+            final SearchResponse response = runner.search(target, builder);
+            latencies[i] = System.nanoTime() - startTime;
+            response.decRef();
+        }
+        final BenchmarkResult result = BenchmarkResult.of(name, latencies);
+        runner.print(result.toString());
+        if (allocatedBytes >= 0 && iterations > 0) {
+            runner.print("  allocated=" + (getAllocatedBytes() - allocatedBytes) / iterations + " bytes/query");
+        }
+        return result;
+    }
+
+    /**
+     * @return bytes allocated by live threads, or -1 if it is not supported
+     */
+    private static long getAllocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof final com.sun.management.ThreadMXBean threadBean
+                && threadBean.isThreadAllocatedMemoryEnabled()) {
+            long total = 0;
+            for (final long bytes : threadBean.getThreadAllocatedBytes(threadBean.getAllThreadIds())) {
+                total += Math.max(0, bytes);
+            }
+            return total;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner.bench;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.script.NumberSortScript;
+import org.elasticsearch.script.ScoreScript;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+import org.elasticsearch.search.sort.ScriptSortBuilder.ScriptSortType;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+
+/**
+ * ScriptBenchmark compares script-score, runtime field and script sort throughput
+ * of Painless and expressions on the same documents. Scripts are stored and
+ * compiled on all nodes before the scenarios run.
+ */
+public class ScriptBenchmark extends QueryBenchmark {
+
+    public static final String PAINLESS_SCORE_SCRIPT = "bench_painless_score";
+
+    public static final String EXPRESSION_SCORE_SCRIPT = "bench_expression_score";
+
+    public static final String PAINLESS_SORT_SCRIPT = "bench_painless_sort";
+
+    public static final String EXPRESSION_SORT_SCRIPT = "bench_expression_sort";
+
+    public ScriptBenchmark(final ElasticsearchClusterRunner runner) {
+        super(runner);
+    }
+
+    @Override
+    protected void addDefaultScenarios() {
+        addScenario("painless_script_score", DOCS_INDEX, builder -> builder.setQuery(
+                QueryBuilders.scriptScoreQuery(QueryBuilders.matchAllQuery(), storedScript(PAINLESS_SCORE_SCRIPT, Map.of("factor", 2)))));
+        addScenario("expression_script_score", DOCS_INDEX, builder -> builder.setQuery(
+                QueryBuilders.scriptScoreQuery(QueryBuilders.matchAllQuery(), storedScript(EXPRESSION_SCORE_SCRIPT, Map.of("factor", 2)))));
+        addScenario("runtime_field_sort", DOCS_INDEX, builder -> builder.setQuery(QueryBuilders.matchAllQuery())
+                .addSort(SortBuilders.fieldSort("value_doubled").order(SortOrder.DESC)));
+        addScenario("painless_script_sort", DOCS_INDEX, builder -> builder.setQuery(QueryBuilders.matchAllQuery()).addSort(
+                SortBuilders.scriptSort(storedScript(PAINLESS_SORT_SCRIPT, Map.of()), ScriptSortType.NUMBER).order(SortOrder.DESC)));
+        addScenario("expression_script_sort", DOCS_INDEX, builder -> builder.setQuery(QueryBuilders.matchAllQuery()).addSort(
+                SortBuilders.scriptSort(storedScript(EXPRESSION_SORT_SCRIPT, Map.of()), ScriptSortType.NUMBER).order(SortOrder.DESC)));
+    }
+
+    @Override
+    public List<BenchmarkResult> run() {
+        final Map<String, Script> scoreScripts = new LinkedHashMap<>();
+        scoreScripts.put(PAINLESS_SCORE_SCRIPT, new Script(ScriptType.INLINE, "painless", "doc['value'].value * params.factor", Map.of()));
+        scoreScripts.put(EXPRESSION_SCORE_SCRIPT, new Script(ScriptType.INLINE, "expression", "doc['value'].value * factor", Map.of()));
+        runner.prewarmScripts(ScoreScript.CONTEXT, scoreScripts);
+        final Map<String, Script> sortScripts = new LinkedHashMap<>();
+        sortScripts.put(PAINLESS_SORT_SCRIPT, new Script(ScriptType.INLINE, "painless", "doc['value'].value * 2", Map.of()));
+        sortScripts.put(EXPRESSION_SORT_SCRIPT, new Script(ScriptType.INLINE, "expression", "doc['value'].value * 2", Map.of()));
+        runner.prewarmScripts(NumberSortScript.CONTEXT, sortScripts);
+        return super.run();
+    }
+
+    private static Script storedScript(final String id, final Map<String, Object> params) {
+        return new Script(ScriptType.STORED, null, id, params);
+    }
+}
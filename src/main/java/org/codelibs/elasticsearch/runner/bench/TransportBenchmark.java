@@ -0,0 +1,138 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner.bench;
+
+import static org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner.newConfigs;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.query.QueryBuilders;
+
+/**
+ * TransportBenchmark compares transport modes of a cluster runner by
+ * startup, replica recovery and cross-node search latency.
+ * The startup time covers starting all nodes and waiting for the first
+ * yellow state, so it includes node initialization as well as cluster formation.
+ * A new cluster is started and deleted for each mode.
+ */
+public class TransportBenchmark {
+
+    public static final String INDEX = "bench_transport";
+
+    private final Path basePath;
+
+    private int numOfNode = 3;
+
+    private long numOfDocs = 100000;
+
+    private int iterations = 200;
+
+    private long seed = 1L;
+
+    /**
+     * @param basePath a directory for temporary clusters
+     */
+    public TransportBenchmark(final Path basePath) {
+        this.basePath = basePath;
+    }
+
+    public TransportBenchmark numOfNode(final int numOfNode) {
+        this.numOfNode = numOfNode;
+        return this;
+    }
+
+    public TransportBenchmark numOfDocs(final long numOfDocs) {
+        this.numOfDocs = numOfDocs;
+        return this;
+    }
+
+    public TransportBenchmark iterations(final int iterations) {
+        this.iterations = iterations;
+        return this;
+    }
+
+    public TransportBenchmark seed(final long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Run the benchmark with the given transport modes.
+     *
+     * @param transportModes transport modes such as "netty" and "tuned"
+     * @return benchmark results named as "&lt;mode&gt;.&lt;phase&gt;"
+     */
+    public List<BenchmarkResult> run(final String... transportModes) {
+        final List<BenchmarkResult> results = new ArrayList<>();
+        for (final String mode : transportModes) {
+            results.addAll(run(mode));
+        }
+        return results;
+    }
+
+    protected List<BenchmarkResult> run(final String mode) {
+        final List<BenchmarkResult> results = new ArrayList<>();
+        final Path clusterPath = basePath.resolve("transport_" + mode);
+        final ElasticsearchClusterRunner runner = new ElasticsearchClusterRunner();
+        try {
+            long startTime = System.nanoTime();
+            runner.build(newConfigs().basePath(clusterPath.toString()).numOfNode(numOfNode).clusterName("transport-bench-" + mode)
+                    .transportMode(mode));
+            runner.ensureYellow();
+            results.add(BenchmarkResult.of(mode + ".startup", new long[] { System.nanoTime() - startTime }));
+
+            runner.createIndex(INDEX, builder -> builder
+                    .setSettings(Settings.builder().put("index.number_of_shards", numOfNode).put("index.number_of_replicas", 0))
+                    .setMapping("tag", "type=keyword", "value", "type=long", "msg", "type=text"));
+            runner.generateDocuments(INDEX, numOfDocs, seed);
+            runner.flush(builder -> builder.setIndices(INDEX));
+
+            startTime = System.nanoTime();
+            runner.admin().indices().prepareUpdateSettings(INDEX).setSettings(Settings.builder().put("index.number_of_replicas", 1))
+                    .execute().actionGet();
+            runner.ensureGreen(INDEX);
+            results.add(BenchmarkResult.of(mode + ".recovery", new long[] { System.nanoTime() - startTime }));
+
+            final long[] latencies = new long[iterations];
+            for (int i = 0; i < iterations; i++) {
+                startTime = System.nanoTime();
+                final SearchResponse response = runner.search(INDEX,
+                        builder -> builder.setQuery(QueryBuilders.termQuery("tag", "tag_1")).setPreference("_replica"));
+                latencies[i] = System.nanoTime() - startTime;
+                response.decRef();
+            }
+            results.add(BenchmarkResult.of(mode + ".search", latencies));
+        } finally {
+            try {
+                runner.close();
+            } catch (final IOException e) {
+                runner.print(e.getLocalizedMessage());
+            }
+            runner.clean();
+        }
+        for (final BenchmarkResult result : results) {
+            runner.print(result.toString());
+        }
+        return results;
+    }
+}
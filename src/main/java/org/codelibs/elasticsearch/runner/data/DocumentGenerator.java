@@ -0,0 +1,373 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * DocumentGenerator creates reproducible JSON documents for a mapping.
+ * A document is derived only from a seed and its document number,
+ * so documents can be generated by many threads in any order.
+ *
+ * Supported types are keyword, text, numerics, date, boolean, ip, geo_point,
+ * object and nested. A constant_keyword field is written with its mapped value,
+ * or skipped if the mapping has no value. Other field types are skipped.
+ */
+public class DocumentGenerator {
+
+    private static final String[] SYLLABLES = new String[] { "ka", "lo", "mi", "ne", "ru", "sa", "to", "vi", "ze", "po", "da", "fu",
+            "gi", "ho", "ja", "ke" };
+
+    private static final long BASE_TIME = 1577836800000L; // 2020-01-01T00:00:00Z
+
+    private static final long TIME_RANGE = 365L * 24 * 60 * 60 * 1000;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final long seed;
+
+    private final int keywordCardinality;
+
+    private final ZipfSampler keywordSampler;
+
+    private final ZipfSampler wordSampler;
+
+    private final String[] vocabulary;
+
+    private final FieldGenerator[] fields;
+
+    public DocumentGenerator(final Map<String, Object> mapping, final long seed) {
+        this(mapping, seed, 1000, 1.1);
+    }
+
+    /**
+     * @param mapping a mapping source which has "properties"
+     * @param seed a seed for all documents
+     * @param keywordCardinality the number of distinct values per keyword field
+     * @param zipfExponent an exponent of Zipfian distribution for keyword values and words
+     */
+    public DocumentGenerator(final Map<String, Object> mapping, final long seed, final int keywordCardinality,
+            final double zipfExponent) {
+        this.seed = seed;
+        this.keywordCardinality = keywordCardinality;
+        this.keywordSampler = new ZipfSampler(keywordCardinality, zipfExponent);
+        this.vocabulary = new String[2000];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = createWord(i);
+        }
+        this.wordSampler = new ZipfSampler(vocabulary.length, zipfExponent);
+        this.fields = createFields(getProperties(mapping));
+    }
+
+    /**
+     * Append a document as JSON.
+     *
+     * @param docId a document number
+     * @param random a random generator reused by the caller
+     * @param buf a buffer to append to
+     */
+    public void generate(final long docId, final DocumentRandom random, final StringBuilder buf) {
+        random.reset(seed, docId);
+        writeObject(fields, random, buf);
+    }
+
+    /**
+     * Append an index action and a document in the bulk format.
+     *
+     * @param docId a document number which is also used as _id
+     * @param random a random generator reused by the caller
+     * @param buf a buffer to append to
+     */
+    public void generateBulkItem(final long docId, final DocumentRandom random, final StringBuilder buf) {
+        buf.append("{\"index\":{\"_id\":\"").append(docId).append("\"}}\n");
+        generate(docId, random, buf);
+        buf.append('\n');
+    }
+
+    public String generate(final long docId) {
+        final StringBuilder buf = new StringBuilder(256);
+        generate(docId, new DocumentRandom(seed), buf);
+        return buf.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static Map<String, Object> getProperties(final Map<String, Object> mapping) {
+        if (mapping == null) {
+            throw new IllegalArgumentException("mapping is null.");
+        }
+        final Object properties = mapping.get("properties");
+        if (properties instanceof Map) {
+            return (Map<String, Object>) properties;
+        }
+        if (mapping.size() == 1) {
+            final Object value = mapping.values().iterator().next();
+            if (value instanceof Map && ((Map<String, Object>) value).get("properties") instanceof Map) {
+                return (Map<String, Object>) ((Map<String, Object>) value).get("properties");
+            }
+        }
+        throw new IllegalArgumentException("properties is not found in " + mapping);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected FieldGenerator[] createFields(final Map<String, Object> properties) {
+        final List<FieldGenerator> list = new ArrayList<>();
+        // sorted to consume random values in the same order for any map implementation
+        for (final Map.Entry<String, Object> entry : new TreeMap<>(properties).entrySet()) {
+            if (!(entry.getValue() instanceof Map)) {
+                continue;
+            }
+            final String name = entry.getKey();
+            final Map<String, Object> field = (Map<String, Object>) entry.getValue();
+            final Object type = field.containsKey("type") ? field.get("type") : field.containsKey("properties") ? "object" : null;
+            if (type == null) {
+                continue;
+            }
+            final FieldGenerator generator = switch (type.toString()) {
+            case "keyword", "wildcard" -> createKeywordField(name);
+            case "constant_keyword" -> field.get("value") != null ? new ConstantField(name, field.get("value").toString()) : null;
+            case "text", "match_only_text" -> new TextField(name);
+            case "long", "unsigned_long" -> new LongField(name, 1000000000L);
+            case "integer" -> new LongField(name, Integer.MAX_VALUE);
+            case "short" -> new LongField(name, Short.MAX_VALUE);
+            case "byte" -> new LongField(name, Byte.MAX_VALUE);
+            case "double", "float", "half_float", "scaled_float" -> new DoubleField(name);
+            case "date", "date_nanos" -> new DateField(name);
+            case "boolean" -> new BooleanField(name);
+            case "ip" -> new IpField(name);
+            case "geo_point" -> new GeoPointField(name);
+            case "object" -> new ObjectField(name, createFields(getProperties(field)));
+            case "nested" -> new NestedField(name, createFields(getProperties(field)));
+            default -> null;
+            };
+            if (generator != null) {
+                list.add(generator);
+            }
+        }
+        return list.toArray(new FieldGenerator[list.size()]);
+    }
+
+    protected FieldGenerator createKeywordField(final String name) {
+        final String[] values = new String[keywordCardinality];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = name + "_" + i;
+        }
+        return new KeywordField(name, values);
+    }
+
+    public static String createWord(final int index) {
+        final StringBuilder buf = new StringBuilder();
+        int value = index + 1;
+        while (value > 0) {
+            buf.append(SYLLABLES[value % SYLLABLES.length]);
+            value /= SYLLABLES.length;
+        }
+        return buf.toString();
+    }
+
+    protected static void writeObject(final FieldGenerator[] fields, final DocumentRandom random, final StringBuilder buf) {
+        buf.append('{');
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                buf.append(',');
+            }
+            appendString(buf, fields[i].name);
+            buf.append(':');
+            fields[i].write(random, buf);
+        }
+        buf.append('}');
+    }
+
+    protected static void appendString(final StringBuilder buf, final String value) {
+        buf.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                buf.append('\\').append(c);
+            } else if (c < 0x20) {
+                buf.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xf]);
+            } else {
+                buf.append(c);
+            }
+        }
+        buf.append('"');
+    }
+
+    protected abstract static class FieldGenerator {
+        protected final String name;
+
+        protected FieldGenerator(final String name) {
+            this.name = name;
+        }
+
+        protected abstract void write(DocumentRandom random, StringBuilder buf);
+    }
+
+    protected class KeywordField extends FieldGenerator {
+        private final String[] values;
+
+        protected KeywordField(final String name, final String[] values) {
+            super(name);
+            this.values = values;
+        }
+
+        @Override
+        protected void write(final DocumentRandom random, final StringBuilder buf) {
+            appendString(buf, values[keywordSampler.sample(random)]);
+        }
+    }
+
+    protected static class ConstantField extends FieldGenerator {
+        private final String value;
+
+        protected ConstantField(final String name, final String value) {
+            super(name);
+            this.value = value;
+        }
+
+        @Override
+        protected void write(final DocumentRandom random, final StringBuilder buf) {
+            appendString(buf, value);
+        }
+    }
+
+    protected class TextField extends FieldGenerator {
+        protected TextField(final String name) {
+            super(name);
+        }
+
+        @Override
+        protected void write(final DocumentRandom random, final StringBuilder buf) {
+            final int numOfWords = 5 + random.nextInt(20);
+            buf.append('"');
+            for (int i = 0; i < numOfWords; i++) {
+                if (i > 0) {
+                    buf.append(' ');
+                }
+                buf.append(vocabulary[wordSampler.sample(random)]);
+            }
+            buf.append('"');
+        }
+    }
+
+    protected static class LongField extends FieldGenerator {
+        private final long bound;
+
+        protected LongField(final String name, final long bound) {
+            super(name);
+            this.bound = bound;
+        }
+
+        @Override
+        protected void write(final DocumentRandom random, final StringBuilder buf) {
+            buf.append(random.nextLong(bound));
+        }
+    }
+
+    protected static class DoubleField extends FieldGenerator {
+        protected DoubleField(final String name) {
+            super(name);
+        }
+
+        @Override
+        protected void write(final DocumentRandom random, final StringBuilder buf) {
+            buf.append(Math.round(random.nextDouble() * 100000.0) / 100.0);
+        }
+    }
+
+    protected static class DateField extends FieldGenerator {
+        protected DateField(final String name) {
+            super(name);
+        }
+
+        @Override
+        protected void write(final DocumentRandom random, final StringBuilder buf) {
+            buf.append(BASE_TIME + random.nextLong(TIME_RANGE));
+        }
+    }
+
+    protected static class BooleanField extends FieldGenerator {
+        protected BooleanField(final String name) {
+            super(name);
+        }
+
+        @Override
+        protected void write(final DocumentRandom random, final StringBuilder buf) {
+            buf.append(random.nextBoolean());
+        }
+    }
+
+    protected static class IpField extends FieldGenerator {
+        protected IpField(final String name) {
+            super(name);
+        }
+
+        @Override
+        protected void write(final DocumentRandom random, final StringBuilder buf) {
+            buf.append("\"10.").append(random.nextInt(256)).append('.').append(random.nextInt(256)).append('.').append(random.nextInt(256))
+                    .append('"');
+        }
+    }
+
+    protected static class GeoPointField extends FieldGenerator {
+        protected GeoPointField(final String name) {
+            super(name);
+        }
+
+        @Override
+        protected void write(final DocumentRandom random, final StringBuilder buf) {
+            buf.append("{\"lat\":").append(Math.round((random.nextDouble() * 180.0 - 90.0) * 1000000.0) / 1000000.0);
+            buf.append(",\"lon\":").append(Math.round((random.nextDouble() * 360.0 - 180.0) * 1000000.0) / 1000000.0);
+            buf.append('}');
+        }
+    }
+
+    protected static class ObjectField extends FieldGenerator {
+        protected final FieldGenerator[] children;
+
+        protected ObjectField(final String name, final FieldGenerator[] children) {
+            super(name);
+            this.children = children;
+        }
+
+        @Override
+        protected void write(final DocumentRandom random, final StringBuilder buf) {
+            writeObject(children, random, buf);
+        }
+    }
+
+    protected static class NestedField extends ObjectField {
+        protected NestedField(final String name, final FieldGenerator[] children) {
+            super(name, children);
+        }
+
+        @Override
+        protected void write(final DocumentRandom random, final StringBuilder buf) {
+            final int count = 1 + random.nextInt(3);
+            buf.append('[');
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    buf.append(',');
+                }
+                writeObject(children, random, buf);
+            }
+            buf.append(']');
+        }
+    }
+}
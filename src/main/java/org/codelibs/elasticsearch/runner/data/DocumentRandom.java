@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner.data;
+
+/**
+ * A SplitMix64 random generator which can be re-seeded per document without allocation.
+ */
+public class DocumentRandom {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long state;
+
+    public DocumentRandom(final long seed) {
+        this.state = seed;
+    }
+
+    /**
+     * Re-seed this generator for a document.
+     *
+     * @param seed a base seed
+     * @param docId a document number
+     */
+    public void reset(final long seed, final long docId) {
+        state = mix64(seed ^ mix64(docId * GOLDEN_GAMMA));
+    }
+
+    public long nextLong() {
+        return mix64(state += GOLDEN_GAMMA);
+    }
+
+    public int nextInt(final int bound) {
+        return (int) ((nextLong() >>> 33) % bound);
+    }
+
+    public long nextLong(final long bound) {
+        return (nextLong() >>> 1) % bound;
+    }
+
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    private static long mix64(final long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
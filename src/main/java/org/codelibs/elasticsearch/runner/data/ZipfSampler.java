@@ -0,0 +1,52 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner.data;
+
+import java.util.Arrays;
+
+/**
+ * Samples ranks in [0, n) from a Zipfian distribution with a precomputed CDF.
+ */
+public class ZipfSampler {
+
+    private final double[] cdf;
+
+    public ZipfSampler(final int n, final double exponent) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be positive: " + n);
+        }
+        cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+    }
+
+    public int sample(final DocumentRandom random) {
+        final int pos = Arrays.binarySearch(cdf, random.nextDouble());
+        final int rank = pos >= 0 ? pos : -pos - 1;
+        return rank < cdf.length ? rank : cdf.length - 1;
+    }
+
+    public int size() {
+        return cdf.length;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner.fault;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.node.Node;
+import org.elasticsearch.plugins.NetworkPlugin;
+import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.ConnectTransportException;
+import org.elasticsearch.transport.Transport;
+import org.elasticsearch.transport.TransportInterceptor;
+import org.elasticsearch.transport.TransportRequest;
+import org.elasticsearch.transport.TransportRequestOptions;
+import org.elasticsearch.transport.TransportResponse;
+import org.elasticsearch.transport.TransportResponseHandler;
+
+/**
+ * NetworkFaultPlugin applies {@link NetworkFaults} to outgoing transport requests of a node.
+ * A node publishes its cluster name as a node attribute, so a receiver is identified by cluster and node name.
+ */
+public class NetworkFaultPlugin extends Plugin implements NetworkPlugin {
+
+    public static final String CLUSTER_ATTRIBUTE = "cluster_runner_cluster";
+
+    private final String clusterName;
+
+    private final String nodeName;
+
+    private volatile ThreadPool threadPool;
+
+    public NetworkFaultPlugin(final Settings settings) {
+        this.clusterName = ClusterName.CLUSTER_NAME_SETTING.get(settings).value();
+        this.nodeName = Node.NODE_NAME_SETTING.get(settings);
+    }
+
+    @Override
+    public Settings additionalSettings() {
+        return Settings.builder().put("node.attr." + CLUSTER_ATTRIBUTE, clusterName).build();
+    }
+
+    @Override
+    public Collection<?> createComponents(final PluginServices services) {
+        threadPool = services.threadPool();
+        return Collections.emptyList();
+    }
+
+    /**
+     * A dropped request fails on the executor of its handler, like a failed send does,
+     * but never on the sending thread.
+     */
+    protected Executor getFailureExecutor(final TransportResponseHandler<?> handler) {
+        final Executor executor = handler.executor();
+        if (executor == EsExecutors.DIRECT_EXECUTOR_SERVICE && threadPool != null) {
+            return threadPool.generic();
+        }
+        return executor;
+    }
+
+    @Override
+    public List<TransportInterceptor> getTransportInterceptors(final NamedWriteableRegistry namedWriteableRegistry,
+            final ThreadContext threadContext) {
+        return List.of(new TransportInterceptor() {
+            @Override
+            public AsyncSender interceptSender(final AsyncSender sender) {
+                return new AsyncSender() {
+                    @Override
+                    public <T extends TransportResponse> void sendRequest(final Transport.Connection connection, final String action,
+                            final TransportRequest request, final TransportRequestOptions options, final TransportResponseHandler<T> handler) {
+                        final NetworkFaults faults = NetworkFaults.get(clusterName);
+                        final String targetCluster = connection.getNode().getAttributes().get(CLUSTER_ATTRIBUTE);
+                        final String targetName = connection.getNode().getName();
+                        if (faults == null || faults.isEmpty() || targetCluster == null
+                                || (clusterName.equals(targetCluster) && nodeName.equals(targetName))) {
+                            sender.sendRequest(connection, action, request, options, handler);
+                            return;
+                        }
+                        if (faults.shouldDrop(nodeName, targetCluster, targetName)) {
+                            getFailureExecutor(handler).execute(threadContext.preserveContext(() -> handler.handleException(
+                                    new ConnectTransportException(connection.getNode(), "dropped by a network fault: " + action))));
+                            return;
+                        }
+                        final long delay = faults.getDelay(nodeName, targetCluster, targetName);
+                        if (delay > 0) {
+                            // a caller may release the request after this method returns
+                            request.incRef();
+                            NetworkFaults.scheduler().schedule(threadContext.preserveContext(() -> {
+                                try {
+                                    sender.sendRequest(connection, action, request, options, handler);
+                                } finally {
+                                    request.decRef();
+                                }
+                            }), delay, TimeUnit.MILLISECONDS);
+                        } else {
+                            sender.sendRequest(connection, action, request, options, handler);
+                        }
+                    }
+                };
+            }
+        });
+    }
+}
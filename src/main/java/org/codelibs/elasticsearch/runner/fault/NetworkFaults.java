@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner.fault;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * NetworkFaults holds partitions, delays and drop rates from nodes of a cluster.
+ * Rules are directional and keyed by a sender node name and a receiver cluster and node name,
+ * so nodes with the same name in another cluster are not affected.
+ */
+public final class NetworkFaults {
+
+    private static final Map<String, NetworkFaults> CLUSTERS = new ConcurrentHashMap<>();
+
+    private static ScheduledExecutorService scheduler;
+
+    private final Set<String> partitions = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, Long> delays = new ConcurrentHashMap<>();
+
+    private final Map<String, Double> dropRates = new ConcurrentHashMap<>();
+
+    private NetworkFaults() {
+        // nothing
+    }
+
+    /**
+     * @param clusterName a cluster name
+     * @return rules of the cluster
+     */
+    public static NetworkFaults of(final String clusterName) {
+        return CLUSTERS.computeIfAbsent(clusterName, k -> new NetworkFaults());
+    }
+
+    /**
+     * @param clusterName a cluster name
+     * @return rules of the cluster, or null if no rule has been set
+     */
+    static NetworkFaults get(final String clusterName) {
+        return CLUSTERS.get(clusterName);
+    }
+
+    /**
+     * Remove all rules of a cluster, and stop the scheduler of delayed requests when no cluster is left.
+     * Requests already delayed are still sent.
+     *
+     * @param clusterName a cluster name
+     */
+    public static void remove(final String clusterName) {
+        final NetworkFaults faults = CLUSTERS.remove(clusterName);
+        if (faults != null) {
+            faults.heal();
+        }
+        synchronized (NetworkFaults.class) {
+            if (CLUSTERS.isEmpty() && scheduler != null) {
+                scheduler.shutdown();
+                scheduler = null;
+            }
+        }
+    }
+
+    static synchronized ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "cluster-runner-network-faults");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return scheduler;
+    }
+
+    private static String key(final String from, final String toCluster, final String to) {
+        return from + '\n' + toCluster + '\n' + to;
+    }
+
+    public void partition(final String from, final String toCluster, final String to) {
+        partitions.add(key(from, toCluster, to));
+    }
+
+    public void delay(final String from, final String toCluster, final String to, final long millis) {
+        delays.put(key(from, toCluster, to), millis);
+    }
+
+    public void drop(final String from, final String toCluster, final String to, final double probability) {
+        dropRates.put(key(from, toCluster, to), probability);
+    }
+
+    /**
+     * Remove all rules.
+     */
+    public void heal() {
+        partitions.clear();
+        delays.clear();
+        dropRates.clear();
+    }
+
+    public boolean isEmpty() {
+        return partitions.isEmpty() && delays.isEmpty() && dropRates.isEmpty();
+    }
+
+    /**
+     * @return true if a request from a node to another node is dropped
+     */
+    boolean shouldDrop(final String from, final String toCluster, final String to) {
+        final String key = key(from, toCluster, to);
+        if (partitions.contains(key)) {
+            return true;
+        }
+        final Double rate = dropRates.get(key);
+        return rate != null && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    /**
+     * @return a delay in milliseconds from a node to another node
+     */
+    long getDelay(final String from, final String toCluster, final String to) {
+        final Long delay = delays.get(key(from, toCluster, to));
+        return delay == null ? 0 : delay;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner.store;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * IoStats counts I/O done through throttled directories of a node.
+ */
+public class IoStats {
+
+    private static final Map<String, IoStats> NODES = new ConcurrentHashMap<>();
+
+    final AtomicLong bytesRead = new AtomicLong();
+
+    final AtomicLong bytesWritten = new AtomicLong();
+
+    final AtomicLong readOps = new AtomicLong();
+
+    final AtomicLong writeOps = new AtomicLong();
+
+    final AtomicLong throttledNanos = new AtomicLong();
+
+    /**
+     * @param clusterName a cluster name
+     * @param nodeName a node name
+     * @return statistics of the node
+     */
+    public static IoStats of(final String clusterName, final String nodeName) {
+        return NODES.computeIfAbsent(clusterName + '\n' + nodeName, k -> new IoStats());
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    public long getReadOps() {
+        return readOps.get();
+    }
+
+    public long getWriteOps() {
+        return writeOps.get();
+    }
+
+    /**
+     * @return time spent in throttling and injected latency
+     */
+    public long getThrottledNanos() {
+        return throttledNanos.get();
+    }
+
+    @Override
+    public String toString() {
+        return "read=" + bytesRead.get() + "b/" + readOps.get() + "ops, written=" + bytesWritten.get() + "b/" + writeOps.get()
+                + "ops, throttled=" + throttledNanos.get() / 1000000 + "ms";
+    }
+}
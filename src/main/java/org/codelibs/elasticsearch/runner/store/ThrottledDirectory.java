@@ -0,0 +1,252 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner.store;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.store.BufferedIndexInput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.FilterIndexOutput;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RateLimiter;
+
+/**
+ * ThrottledDirectory limits bandwidth and IOPS, and injects latency, for reads and writes of a directory.
+ * Limiters are shared by all directories of a node.
+ */
+public class ThrottledDirectory extends FilterDirectory {
+
+    /** The number of bytes counted as one I/O operation. */
+    static final int CHUNK_SIZE = 8192;
+
+    private final Throttle throttle;
+
+    public ThrottledDirectory(final Directory in, final Throttle throttle) {
+        super(in);
+        this.throttle = throttle;
+    }
+
+    @Override
+    public IndexOutput createOutput(final String name, final IOContext context) throws IOException {
+        return new ThrottledIndexOutput(in.createOutput(name, context), throttle);
+    }
+
+    @Override
+    public IndexOutput createTempOutput(final String prefix, final String suffix, final IOContext context) throws IOException {
+        return new ThrottledIndexOutput(in.createTempOutput(prefix, suffix, context), throttle);
+    }
+
+    @Override
+    public IndexInput openInput(final String name, final IOContext context) throws IOException {
+        final IndexInput input = in.openInput(name, context);
+        return new ThrottledIndexInput("throttled(" + input + ")", input, 0, input.length(), throttle);
+    }
+
+    @Override
+    public void sync(final Collection<String> names) throws IOException {
+        throttle.write(0);
+        super.sync(names);
+    }
+
+    /**
+     * Limiters and statistics of a node.
+     */
+    public static class Throttle {
+        private final RateLimiter readLimiter;
+
+        private final RateLimiter writeLimiter;
+
+        private final RateLimiter opsLimiter;
+
+        private final long latencyNanos;
+
+        private final IoStats stats;
+
+        /**
+         * @param readBytesPerSec read bandwidth, or 0 for no limit
+         * @param writeBytesPerSec write bandwidth, or 0 for no limit
+         * @param maxIops operations per second, or 0 for no limit
+         * @param latencyNanos latency added to each operation
+         * @param stats statistics to update
+         */
+        public Throttle(final long readBytesPerSec, final long writeBytesPerSec, final int maxIops, final long latencyNanos,
+                final IoStats stats) {
+            this.readLimiter = readBytesPerSec > 0 ? new RateLimiter.SimpleRateLimiter(readBytesPerSec / 1024.0 / 1024.0) : null;
+            this.writeLimiter = writeBytesPerSec > 0 ? new RateLimiter.SimpleRateLimiter(writeBytesPerSec / 1024.0 / 1024.0) : null;
+            // one operation is paused as one byte
+            this.opsLimiter = maxIops > 0 ? new RateLimiter.SimpleRateLimiter(maxIops / 1024.0 / 1024.0) : null;
+            this.latencyNanos = latencyNanos;
+            this.stats = stats;
+        }
+
+        void read(final long bytes) throws IOException {
+            stats.bytesRead.addAndGet(bytes);
+            stats.readOps.incrementAndGet();
+            pause(readLimiter, bytes);
+        }
+
+        void write(final long bytes) throws IOException {
+            stats.bytesWritten.addAndGet(bytes);
+            stats.writeOps.incrementAndGet();
+            pause(writeLimiter, bytes);
+        }
+
+        private void pause(final RateLimiter limiter, final long bytes) throws IOException {
+            long paused = 0;
+            if (limiter != null && bytes > 0) {
+                paused += limiter.pause(bytes);
+            }
+            if (opsLimiter != null) {
+                paused += opsLimiter.pause(1);
+            }
+            if (latencyNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(latencyNanos);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while injecting latency.");
+                }
+                paused += latencyNanos;
+            }
+            if (paused > 0) {
+                stats.throttledNanos.addAndGet(paused);
+            }
+        }
+    }
+
+    static class ThrottledIndexOutput extends FilterIndexOutput {
+        private final Throttle throttle;
+
+        private long pendingBytes;
+
+        ThrottledIndexOutput(final IndexOutput out, final Throttle throttle) {
+            super("throttled(" + out + ")", out.getName(), out);
+            this.throttle = throttle;
+        }
+
+        @Override
+        public void writeByte(final byte b) throws IOException {
+            out.writeByte(b);
+            if (++pendingBytes >= CHUNK_SIZE) {
+                flushPending();
+            }
+        }
+
+        @Override
+        public void writeBytes(final byte[] b, final int offset, final int length) throws IOException {
+            out.writeBytes(b, offset, length);
+            pendingBytes += length;
+            if (pendingBytes >= CHUNK_SIZE) {
+                flushPending();
+            }
+        }
+
+        private void flushPending() throws IOException {
+            throttle.write(pendingBytes);
+            pendingBytes = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (pendingBytes > 0) {
+                    flushPending();
+                }
+            } finally {
+                super.close();
+            }
+        }
+    }
+
+    static class ThrottledIndexInput extends BufferedIndexInput {
+        private IndexInput delegate;
+
+        private final long offset;
+
+        private final long length;
+
+        private final Throttle throttle;
+
+        private boolean isClone;
+
+        ThrottledIndexInput(final String resourceDescription, final IndexInput delegate, final long offset, final long length,
+                final Throttle throttle) {
+            super(resourceDescription, CHUNK_SIZE);
+            this.delegate = delegate;
+            this.offset = offset;
+            this.length = length;
+            this.throttle = throttle;
+        }
+
+        @Override
+        protected void readInternal(final ByteBuffer b) throws IOException {
+            final long position = getFilePointer();
+            final int len = b.remaining();
+            if (position + len > length) {
+                throw new EOFException("read past EOF: " + this);
+            }
+            delegate.seek(offset + position);
+            delegate.readBytes(b.array(), b.arrayOffset() + b.position(), len);
+            b.position(b.position() + len);
+            throttle.read(len);
+        }
+
+        @Override
+        protected void seekInternal(final long pos) throws IOException {
+            // a position is passed on the next read
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public ThrottledIndexInput clone() {
+            final ThrottledIndexInput clone = (ThrottledIndexInput) super.clone();
+            clone.delegate = delegate.clone();
+            clone.isClone = true;
+            return clone;
+        }
+
+        @Override
+        public IndexInput slice(final String sliceDescription, final long sliceOffset, final long sliceLength) throws IOException {
+            if (sliceOffset < 0 || sliceLength < 0 || sliceOffset + sliceLength > length) {
+                throw new IllegalArgumentException("slice() " + sliceDescription + " out of bounds: " + this);
+            }
+            final ThrottledIndexInput slice = new ThrottledIndexInput(getFullSliceDescription(sliceDescription), delegate.clone(),
+                    offset + sliceOffset, sliceLength, throttle);
+            slice.isClone = true;
+            return slice;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!isClone) {
+                delegate.close();
+            }
+        }
+    }
+}
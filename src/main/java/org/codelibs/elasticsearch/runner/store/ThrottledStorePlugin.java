@@ -0,0 +1,98 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner.store;
+
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.metadata.IndexMetadata;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.index.IndexModule;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.store.FsDirectoryFactory;
+import org.elasticsearch.node.Node;
+import org.elasticsearch.plugins.IndexStorePlugin;
+import org.elasticsearch.plugins.Plugin;
+
+/**
+ * ThrottledStorePlugin provides the "throttled" store type, which limits I/O of indices
+ * by settings of the node holding a shard.
+ */
+public class ThrottledStorePlugin extends Plugin implements IndexStorePlugin {
+
+    public static final String STORE_TYPE = "throttled";
+
+    public static final Setting<ByteSizeValue> READ_BYTES_PER_SEC_SETTING =
+            Setting.byteSizeSetting("runner.io.read_bytes_per_sec", ByteSizeValue.ZERO, Property.NodeScope);
+
+    public static final Setting<ByteSizeValue> WRITE_BYTES_PER_SEC_SETTING =
+            Setting.byteSizeSetting("runner.io.write_bytes_per_sec", ByteSizeValue.ZERO, Property.NodeScope);
+
+    public static final Setting<Integer> MAX_IOPS_SETTING = Setting.intSetting("runner.io.max_iops", 0, 0, Property.NodeScope);
+
+    public static final Setting<TimeValue> LATENCY_SETTING = Setting.timeSetting("runner.io.latency", TimeValue.ZERO, Property.NodeScope);
+
+    public static final Setting<String> DELEGATE_STORE_TYPE_SETTING =
+            Setting.simpleString("runner.io.store_type", IndexModule.Type.FS.getSettingsKey(), value -> {
+                if (!IndexModule.isBuiltinType(value)) {
+                    throw new IllegalArgumentException("A throttled store wraps fs, niofs, mmapfs or hybridfs, but got " + value + ".");
+                }
+            }, Property.NodeScope);
+
+    private final ThrottledDirectory.Throttle throttle;
+
+    private final String delegateStoreType;
+
+    public ThrottledStorePlugin(final Settings settings) {
+        throttle = new ThrottledDirectory.Throttle(READ_BYTES_PER_SEC_SETTING.get(settings).getBytes(),
+                WRITE_BYTES_PER_SEC_SETTING.get(settings).getBytes(), MAX_IOPS_SETTING.get(settings),
+                LATENCY_SETTING.get(settings).nanos(),
+                IoStats.of(ClusterName.CLUSTER_NAME_SETTING.get(settings).value(), Node.NODE_NAME_SETTING.get(settings)));
+        delegateStoreType = DELEGATE_STORE_TYPE_SETTING.get(settings);
+    }
+
+    @Override
+    public List<Setting<?>> getSettings() {
+        return List.of(READ_BYTES_PER_SEC_SETTING, WRITE_BYTES_PER_SEC_SETTING, MAX_IOPS_SETTING, LATENCY_SETTING,
+                DELEGATE_STORE_TYPE_SETTING);
+    }
+
+    @Override
+    public Map<String, DirectoryFactory> getDirectoryFactories() {
+        final FsDirectoryFactory fsDirectoryFactory = new FsDirectoryFactory();
+        return Map.of(STORE_TYPE, (indexSettings, shardPath) -> new ThrottledDirectory(
+                fsDirectoryFactory.newDirectory(toFsIndexSettings(indexSettings, delegateStoreType), shardPath), throttle));
+    }
+
+    /**
+     * FsDirectoryFactory chooses a directory by index.store.type, so the delegate sees a built-in type
+     * such as "fs" instead of "throttled".
+     */
+    protected static IndexSettings toFsIndexSettings(final IndexSettings indexSettings, final String storeType) {
+        final Settings settings = Settings.builder()
+                .put(indexSettings.getSettings())
+                .put(IndexModule.INDEX_STORE_TYPE_SETTING.getKey(), storeType)
+                .build();
+        final IndexMetadata indexMetadata = IndexMetadata.builder(indexSettings.getIndexMetadata()).settings(settings).build();
+        return new IndexSettings(indexMetadata, settings);
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner;
+
+import junit.framework.TestCase;
+
+public class CpuUsageSnapshotTest extends TestCase {
+
+    public void test_capture() {
+        final CpuUsageSnapshot previous = CpuUsageSnapshot.capture();
+        final CpuUsageSnapshot current = CpuUsageSnapshot.capture();
+        assertTrue(current.getThreads() > 0);
+
+        final CpuUsageSnapshot diff = current.diff(previous);
+        assertTrue(diff.getTimestamp() >= 0);
+        assertEquals(current.getThreads(), diff.getThreads());
+        if (current.getProcessCpuTime() >= 0) {
+            assertTrue(diff.getProcessCpuTime() >= 0);
+        }
+        if (current.getVoluntaryContextSwitches() >= 0) {
+            assertTrue(diff.getVoluntaryContextSwitches() >= 0);
+        }
+    }
+
+    public void test_diff() {
+        final CpuUsageSnapshot previous = new CpuUsageSnapshot(1000, 10, 100, 20, 5000000);
+        final CpuUsageSnapshot current = new CpuUsageSnapshot(3000, 12, 150, -1, 8000000);
+        final CpuUsageSnapshot diff = current.diff(previous);
+        assertEquals(2000, diff.getTimestamp());
+        assertEquals(12, diff.getThreads());
+        assertEquals(50, diff.getVoluntaryContextSwitches());
+        // unavailable values stay unavailable
+        assertEquals(-1, diff.getNonvoluntaryContextSwitches());
+        assertEquals(3000000, diff.getProcessCpuTime());
+        assertEquals("threads=12, voluntary_ctxt_switches=50, nonvoluntary_ctxt_switches=-1, cpu_time=3ms", diff.toString());
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner;
+
+import static org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner.newConfigs;
+
+import org.codelibs.elasticsearch.runner.store.IoStats;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.Settings.Builder;
+
+import junit.framework.TestCase;
+
+public class ElasticsearchClusterRunnerIoThrottleTest extends TestCase {
+
+    private ElasticsearchClusterRunner runner;
+
+    @Override
+    protected void setUp() throws Exception {
+        runner = new ElasticsearchClusterRunner();
+        runner.onBuild(new ElasticsearchClusterRunner.Builder() {
+            @Override
+            public void build(final int number, final Builder settingsBuilder) {
+                settingsBuilder.putList("discovery.seed_hosts", "127.0.0.1:9301");
+                settingsBuilder.putList("cluster.initial_master_nodes", "127.0.0.1:9301");
+            }
+        }).build(newConfigs().clusterName("es-cl-run-io-" + System.currentTimeMillis()).numOfNode(1)
+                .ioThrottle("1:write=10mb,iops=1000,latency=1ms"));
+        runner.ensureYellow();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        runner.close();
+        runner.clean();
+    }
+
+    public void test_ioThrottle() throws Exception {
+        final String index = "test_throttled";
+        runner.createIndex(index, Settings.builder().put("index.number_of_replicas", 0).build());
+        runner.ensureYellow(index);
+
+        final IoStats ioStats = runner.getIoStats("Node 1");
+        final long bytesWritten = ioStats.getBytesWritten();
+        final long writeOps = ioStats.getWriteOps();
+        for (int i = 1; i <= 100; i++) {
+            runner.insert(index, String.valueOf(i), "{\"msg\":\"test " + i + "\"}");
+        }
+        runner.flush();
+        assertEquals(100, runner.count(index).getHits().getTotalHits().value);
+
+        assertTrue(ioStats.getBytesWritten() > bytesWritten);
+        assertTrue(ioStats.getWriteOps() > writeOps);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner;
+
+import static org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner.newConfigs;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.internal.Client;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.Settings.Builder;
+
+import junit.framework.TestCase;
+
+public class ElasticsearchClusterRunnerNetworkFaultTest extends TestCase {
+
+    private ElasticsearchClusterRunner runner;
+
+    @Override
+    protected void setUp() throws Exception {
+        runner = new ElasticsearchClusterRunner();
+        runner.onBuild(new ElasticsearchClusterRunner.Builder() {
+            @Override
+            public void build(final int number, final Builder settingsBuilder) {
+                settingsBuilder.putList("discovery.seed_hosts", "127.0.0.1:9301", "127.0.0.1:9302");
+                settingsBuilder.putList("cluster.initial_master_nodes", "127.0.0.1:9301");
+            }
+        }).build(newConfigs().clusterName("es-cl-run-fault-" + System.currentTimeMillis()).numOfNode(3).networkFaults());
+        runner.ensureYellow();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        runner.close();
+        runner.clean();
+    }
+
+    public void test_partitionAndHeal() throws Exception {
+        final String index = "test_fault";
+        runner.createIndex(index, Settings.builder().put("index.number_of_shards", 6).put("index.number_of_replicas", 0).build());
+        runner.ensureGreen(index);
+        for (int i = 1; i <= 60; i++) {
+            runner.insert(index, String.valueOf(i), "{\"msg\":\"test " + i + "\"}");
+        }
+        runner.refresh();
+
+        final Client client = runner.getNode("Node 3").client();
+        runner.partition("Node 3");
+        try {
+            final SearchResponse response = client.prepareSearch(index).get();
+            assertTrue(response.getFailedShards() > 0);
+        } catch (final ElasticsearchException e) {
+            // all shards on other nodes failed
+        }
+
+        runner.heal();
+        runner.ensureGreen(index);
+        final SearchResponse response = client.prepareSearch(index).get();
+        assertEquals(0, response.getFailedShards());
+        assertEquals(60, response.getHits().getTotalHits().value);
+    }
+}
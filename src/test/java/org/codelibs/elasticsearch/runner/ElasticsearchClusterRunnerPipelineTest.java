@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner;
+
+import static org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner.newConfigs;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.elasticsearch.action.ingest.SimulateDocumentBaseResult;
+import org.elasticsearch.action.ingest.SimulateDocumentResult;
+import org.elasticsearch.common.settings.Settings.Builder;
+import org.elasticsearch.ingest.IngestDocument;
+import org.elasticsearch.ingest.IngestMetadata;
+
+import junit.framework.TestCase;
+
+public class ElasticsearchClusterRunnerPipelineTest extends TestCase {
+
+    private ElasticsearchClusterRunner runner;
+
+    private String clusterName;
+
+    @Override
+    protected void setUp() throws Exception {
+        clusterName = "es-cl-run-" + System.currentTimeMillis();
+        runner = new ElasticsearchClusterRunner();
+        runner.onBuild(new ElasticsearchClusterRunner.Builder() {
+            @Override
+            public void build(final int number, final Builder settingsBuilder) {
+                settingsBuilder.putList("discovery.seed_hosts", "127.0.0.1:9301");
+                settingsBuilder.putList("cluster.initial_master_nodes", "127.0.0.1:9301");
+            }
+        }).build(newConfigs().clusterName(clusterName).numOfNode(1).nodeRoles("master", "data", "ingest"));
+        runner.ensureYellow();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        runner.close();
+        runner.clean();
+        assertFalse("Check if " + runner.basePath + " is deleted", Files.exists(FileSystems.getDefault().getPath(runner.basePath)));
+    }
+
+    public void test_pipeline() throws Exception {
+        final String pipeline = "test_pipeline";
+        runner.createPipeline(pipeline, "{\"processors\":[{\"set\":{\"tag\":\"set_status\",\"field\":\"status\",\"value\":\"ok\"}},"
+                + "{\"uppercase\":{\"field\":\"msg\"}}]}");
+        final List<String> sources = List.of("{\"msg\":\"test 1\"}", "{\"msg\":\"test 2\"}", "{\"msg\":\"test 3\"}");
+
+        final List<SimulateDocumentResult> results = runner.simulatePipeline(pipeline, sources, 2);
+        assertEquals(3, results.size());
+        final IngestDocument document = ((SimulateDocumentBaseResult) results.get(0)).getIngestDocument();
+        assertEquals("ok", document.getFieldValue("status", String.class));
+        assertEquals("TEST 1", document.getFieldValue("msg", String.class));
+
+        final PipelineBenchmarkResult result = runner.benchmarkPipeline("test_ingest", pipeline, sources, 100, 30);
+        assertEquals(100, result.getNumOfDocs());
+        assertEquals(2, result.getProcessorStats().size());
+        assertEquals("set_status", result.getProcessorStats().get(0).getName());
+        assertEquals(100, result.getProcessorStats().get(0).getCount());
+        assertEquals("uppercase", result.getProcessorStats().get(1).getType());
+        assertEquals(100, result.getProcessorStats().get(1).getCount());
+        runner.refresh();
+        assertEquals(100, runner.count("test_ingest").getHits().getTotalHits().value);
+
+        runner.deletePipeline(pipeline);
+    }
+
+    public void test_reset() throws Exception {
+        runner.createPipeline("test_pipeline", "{\"processors\":[{\"uppercase\":{\"field\":\"msg\"}}]}");
+        runner.createPipeline("test_managed_pipeline",
+                "{\"processors\":[{\"uppercase\":{\"field\":\"msg\"}}],\"_meta\":{\"managed\":true}}");
+
+        runner.reset();
+
+        final IngestMetadata ingestMetadata =
+                runner.client().admin().cluster().prepareState().execute().actionGet().getState().metadata().custom(IngestMetadata.TYPE);
+        assertFalse(ingestMetadata.getPipelines().containsKey("test_pipeline"));
+        assertTrue(ingestMetadata.getPipelines().containsKey("test_managed_pipeline"));
+    }
+}
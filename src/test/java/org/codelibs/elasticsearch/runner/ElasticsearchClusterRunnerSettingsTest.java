@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.elasticsearch.common.settings.Settings;
+
+import junit.framework.TestCase;
+
+public class ElasticsearchClusterRunnerSettingsTest extends TestCase {
+
+    public void test_applyCpuBudget() {
+        final ElasticsearchClusterRunner runner = new ElasticsearchClusterRunner();
+
+        final Settings.Builder builder = Settings.builder();
+        runner.applyCpuBudget(builder, 8, 3);
+        assertEquals("2", builder.get("node.processors"));
+        assertEquals("4", builder.get("thread_pool.generic.max"));
+        assertEquals("3", builder.get("thread_pool.management.max"));
+        assertEquals("3", builder.get("thread_pool.search.size"));
+        assertEquals("2", builder.get("thread_pool.write.size"));
+
+        // a node gets at least one processor, and explicit settings are kept
+        final Settings.Builder smallBuilder = Settings.builder().put("thread_pool.write.size", "4");
+        runner.applyCpuBudget(smallBuilder, 2, 3);
+        assertEquals("1", smallBuilder.get("node.processors"));
+        assertEquals("4", smallBuilder.get("thread_pool.generic.max"));
+        assertEquals("2", smallBuilder.get("thread_pool.management.max"));
+        assertEquals("2", smallBuilder.get("thread_pool.search.size"));
+        assertEquals("4", smallBuilder.get("thread_pool.write.size"));
+    }
+
+    public void test_getDataPaths() {
+        final ElasticsearchClusterRunner runner = new ElasticsearchClusterRunner();
+        final Path homePath1 = Paths.get("base", "node_1");
+        final Path homePath2 = Paths.get("base", "node_2");
+
+        assertEquals(List.of(homePath1.resolve("data")), runner.getDataPaths(1, homePath1));
+        assertEquals(List.of(homePath2.resolve("data")), runner.getDataPaths(2, homePath2));
+
+        runner.dataPath = "mnt";
+        assertEquals(List.of(Paths.get("mnt", "node_1")), runner.getDataPaths(1, homePath1));
+        assertEquals(List.of(Paths.get("mnt", "node_2")), runner.getDataPaths(2, homePath2));
+
+        runner.dataPaths = "mnt_a, mnt_b";
+        runner.numOfDataPaths = 2;
+        final List<Path> paths1 = runner.getDataPaths(1, homePath1);
+        final List<Path> paths2 = runner.getDataPaths(2, homePath2);
+        assertEquals(List.of(Paths.get("mnt_a", "node_1", "data_0"), Paths.get("mnt_b", "node_1", "data_1")), paths1);
+        // each node starts from a different mount point
+        assertEquals(List.of(Paths.get("mnt_b", "node_2", "data_0"), Paths.get("mnt_a", "node_2", "data_1")), paths2);
+        final Set<Path> allPaths = new HashSet<>(paths1);
+        allPaths.addAll(paths2);
+        allPaths.addAll(runner.getDataPaths(3, Paths.get("base", "node_3")));
+        assertEquals(6, allPaths.size());
+    }
+
+    public void test_writeConfig() throws Exception {
+        final ElasticsearchClusterRunner runner = new ElasticsearchClusterRunner();
+        final Path confPath = Files.createTempDirectory("runner_conf");
+        try {
+            final String name = ElasticsearchClusterRunner.ELASTICSEARCH_YAML;
+            final Path path = confPath.resolve(name);
+            final Path hashPath = confPath.resolve("." + name + ElasticsearchClusterRunner.CONFIG_HASH_SUFFIX);
+
+            runner.writeConfig(path, name);
+            final String template = Files.readString(path, StandardCharsets.UTF_8);
+            assertTrue(Files.exists(hashPath));
+
+            // a file written by the runner for an older template is updated
+            Files.writeString(path, "old: true\n", StandardCharsets.UTF_8);
+            Files.writeString(hashPath, ElasticsearchClusterRunner.getHash("old: true\n".getBytes(StandardCharsets.UTF_8)),
+                    StandardCharsets.UTF_8);
+            runner.writeConfig(path, name);
+            assertEquals(template, Files.readString(path, StandardCharsets.UTF_8));
+
+            // a file edited by a user is kept
+            Files.writeString(path, "user: true\n", StandardCharsets.UTF_8);
+            runner.writeConfig(path, name);
+            assertEquals("user: true\n", Files.readString(path, StandardCharsets.UTF_8));
+
+            // a file provided by a user without a hash is kept
+            Files.delete(hashPath);
+            runner.writeConfig(path, name);
+            assertEquals("user: true\n", Files.readString(path, StandardCharsets.UTF_8));
+        } finally {
+            runner.deleteDir(confPath);
+        }
+    }
+}
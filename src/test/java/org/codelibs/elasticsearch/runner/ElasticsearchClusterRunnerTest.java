@@ -23,7 +23,11 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import org.codelibs.curl.CurlException;
 import org.codelibs.curl.CurlResponse;
@@ -31,15 +35,31 @@ import org.codelibs.elasticsearch.runner.net.EcrCurl;
 import org.elasticsearch.action.DocWriteResponse;
 import org.elasticsearch.action.DocWriteResponse.Result;
 import org.elasticsearch.action.admin.indices.alias.get.GetAliasesResponse;
+import org.elasticsearch.action.admin.indices.template.put.TransportPutComposableIndexTemplateAction;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.ComposableIndexTemplate;
+import org.elasticsearch.cluster.metadata.Metadata;
+import org.elasticsearch.cluster.routing.IndexRoutingTable;
+import org.elasticsearch.cluster.routing.IndexShardRoutingTable;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.settings.Settings.Builder;
+import org.elasticsearch.common.xcontent.LoggingDeprecationHandler;
+import org.elasticsearch.core.TimeValue;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.node.Node;
+import org.elasticsearch.script.ScriptMetadata;
 import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.xcontent.NamedXContentRegistry;
 import org.elasticsearch.xcontent.XContentBuilder;
 import org.elasticsearch.xcontent.XContentFactory;
+import org.elasticsearch.xcontent.XContentParser;
+import org.elasticsearch.xcontent.XContentType;
+import org.elasticsearch.xcontent.json.JsonXContent;
 
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import junit.framework.TestCase;
 
 public class ElasticsearchClusterRunnerTest extends TestCase {
@@ -284,4 +304,193 @@ public class ElasticsearchClusterRunnerTest extends TestCase {
 
         runner.ensureGreen();
     }
+
+    public void test_snapshot() throws Exception {
+        final String index = "test_snapshot";
+        runner.createIndex(index, (Settings) null);
+        for (int i = 1; i <= 100; i++) {
+            runner.insert(index, String.valueOf(i), "{\"msg\":\"test " + i + "\"}");
+        }
+        runner.refresh();
+
+        runner.createFsRepository("test_repo");
+        final SnapshotResult snapshotResult = runner.snapshot("test_repo", "snapshot_1", index);
+        assertTrue(snapshotResult.getBytes() > 0);
+        final SnapshotResult restoreResult = runner.restore("test_repo", "snapshot_1", "_restored", index);
+        assertFalse(restoreResult.getShardResults().isEmpty());
+        assertTrue(runner.indexExists(index + "_restored"));
+        runner.refresh();
+        assertEquals(100, runner.count(index + "_restored").getHits().getTotalHits().value);
+    }
+
+    public void test_reindex() throws Exception {
+        final String index = "test_reindex";
+        runner.createIndex(index, (Settings) null);
+        for (int i = 1; i <= 100; i++) {
+            runner.insert(index, String.valueOf(i), "{\"msg\":\"test " + i + "\"}");
+        }
+        runner.refresh();
+
+        final ReindexProgress reindexProgress = runner.reindex(index, index + "_copy", 0, 30, -1, null);
+        assertTrue(reindexProgress.isCompleted());
+        assertTrue(reindexProgress.getFailures().isEmpty());
+        assertEquals(100, reindexProgress.getCreated());
+        assertTrue(runner.reindexTasks.isEmpty());
+        runner.refresh();
+        assertEquals(100, runner.count(index + "_copy").getHits().getTotalHits().value);
+    }
+
+    public void test_reset() throws Exception {
+        final String index = "test_reset";
+        final String alias = index + "_alias";
+        runner.createIndex(index, (Settings) null);
+        runner.updateAlias(alias, new String[] { index }, null);
+        runner.client().execute(TransportPutComposableIndexTemplateAction.TYPE,
+                new TransportPutComposableIndexTemplateAction.Request("test_template")
+                        .indexTemplate(ComposableIndexTemplate.builder().indexPatterns(List.of("test_reset_*")).build()))
+                .actionGet();
+        runner.client().execute(TransportPutComposableIndexTemplateAction.TYPE,
+                new TransportPutComposableIndexTemplateAction.Request("test_managed_template")
+                        .indexTemplate(ComposableIndexTemplate.builder().indexPatterns(List.of("test_managed_*"))
+                                .metadata(Map.of("managed", true)).build()))
+                .actionGet();
+        runner.client().admin().indices().preparePutTemplate("test_legacy_template").setPatterns(List.of("test_legacy_*")).execute()
+                .actionGet();
+        runner.client().admin().cluster().preparePutStoredScript().setId("test_script")
+                .setContent(new BytesArray("{\"script\":{\"lang\":\"mustache\",\"source\":{\"query\":{\"match_all\":{}}}}}"),
+                        XContentType.JSON)
+                .execute().actionGet();
+        runner.client().admin().cluster().prepareUpdateSettings()
+                .setPersistentSettings(Settings.builder().put("cluster.routing.allocation.node_concurrent_recoveries", 3)).execute()
+                .actionGet();
+
+        runner.reset();
+
+        assertFalse(runner.indexExists(index));
+        assertNull(runner.getAlias(alias).getAliases().get(index));
+        final Metadata metadata = runner.client().admin().cluster().prepareState().execute().actionGet().getState().metadata();
+        assertFalse(metadata.templatesV2().containsKey("test_template"));
+        assertTrue(metadata.templatesV2().containsKey("test_managed_template"));
+        assertFalse(metadata.templates().containsKey("test_legacy_template"));
+        final ScriptMetadata scriptMetadata = metadata.custom(ScriptMetadata.TYPE);
+        assertTrue(scriptMetadata == null || !scriptMetadata.getStoredScripts().containsKey("test_script"));
+        assertTrue(metadata.persistentSettings().isEmpty());
+    }
+
+    public void test_createIndexOnNodes() throws Exception {
+        final String placedIndex = "test_placed";
+        runner.createIndexOnNodes(placedIndex,
+                Settings.builder().put("index.number_of_shards", 2).put("index.number_of_replicas", 1).build(), 0, 1);
+        runner.ensureGreen(placedIndex);
+        final Map<String, Integer> placedCounts = countShardsByNode(placedIndex);
+        assertEquals(Map.of("Node 1", 2, "Node 2", 2), placedCounts);
+
+        final String balancedIndex = "test_balanced";
+        runner.createBalancedIndex(balancedIndex,
+                Settings.builder().put("index.number_of_shards", 3).put("index.number_of_replicas", 1).build());
+        runner.ensureGreen(balancedIndex);
+        final Map<String, Integer> balancedCounts = countShardsByNode(balancedIndex);
+        assertEquals(Map.of("Node 1", 2, "Node 2", 2, "Node 3", 2), balancedCounts);
+    }
+
+    private Map<String, Integer> countShardsByNode(final String index) {
+        final ClusterState state = runner.client().admin().cluster().prepareState().execute().actionGet().getState();
+        final Map<String, Integer> counts = new HashMap<>();
+        final IndexRoutingTable indexRoutingTable = state.routingTable().index(index);
+        for (int i = 0; i < indexRoutingTable.size(); i++) {
+            final IndexShardRoutingTable shardRoutingTable = indexRoutingTable.shard(i);
+            for (int j = 0; j < shardRoutingTable.size(); j++) {
+                counts.merge(state.nodes().get(shardRoutingTable.shard(j).currentNodeId()).getName(), 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    public void test_clusterStateEvents() throws Exception {
+        final String index = "test_events";
+        try (final ClusterStateEventStream eventStream =
+                runner.subscribeClusterStateEvents(1000, ClusterStateEvent.Type.INDEX_CREATED, ClusterStateEvent.Type.INDEX_DELETED)) {
+            runner.createIndex(index, (Settings) null);
+            runner.ensureYellow(index);
+            final ClusterStateEvent created = eventStream.await(e -> index.equals(e.getIndex()), TimeValue.timeValueSeconds(10));
+            assertNotNull(created);
+            assertEquals(ClusterStateEvent.Type.INDEX_CREATED, created.getType());
+            assertTrue(created.getStateVersion() > 0);
+
+            runner.deleteIndex(index);
+            final ClusterStateEvent deleted = eventStream.await(
+                    e -> e.getType() == ClusterStateEvent.Type.INDEX_DELETED && index.equals(e.getIndex()), TimeValue.timeValueSeconds(10));
+            assertNotNull(deleted);
+            assertTrue(deleted.getStateVersion() > created.getStateVersion());
+            for (final ClusterStateEvent event : eventStream.drain()) {
+                assertTrue(event.getType() == ClusterStateEvent.Type.INDEX_CREATED || event.getType() == ClusterStateEvent.Type.INDEX_DELETED);
+            }
+            assertEquals(0, eventStream.getDroppedEvents());
+        }
+    }
+
+    public void test_telemetry() throws Exception {
+        final String index = "test_telemetry";
+        final NodeTelemetryCollector collector = runner.startTelemetry(50, 1000);
+        runner.createIndex(index, (Settings) null);
+        runner.ensureYellow(index);
+        for (int i = 1; i <= 10; i++) {
+            runner.insert(index, String.valueOf(i), "{\"msg\":\"test " + i + "\"}");
+        }
+        // wait for samples taken after the inserts
+        final long insertedTime = System.currentTimeMillis();
+        for (int i = 0; i < 100 && collector.getSamples().stream().noneMatch(sample -> sample.getTimestamp() > insertedTime); i++) {
+            Thread.sleep(100);
+        }
+        final List<NodeTelemetryCollector.Sample> samples = collector.getSamples();
+        for (int i = 1; i <= NUM_OF_NODES; i++) {
+            final String nodeName = "Node " + i;
+            assertTrue(nodeName, samples.stream().anyMatch(sample -> nodeName.equals(sample.getNodeName())));
+        }
+        final NodeTelemetryCollector.Sample jvmSample = samples.stream()
+                .filter(sample -> NodeTelemetryCollector.JVM.equals(sample.getNodeName())).findFirst().orElse(null);
+        assertNotNull(jvmSample);
+        assertTrue(jvmSample.getMetrics().get("heap.used") > 0);
+        final long writes = samples.stream().filter(sample -> sample.getTimestamp() > insertedTime)
+                .mapToLong(sample -> sample.getMetrics().getOrDefault("thread_pool.write.completed", 0L)).sum();
+        assertTrue(writes > 0);
+
+        runner.stopTelemetry();
+        final Path csvPath = runner.getRunnerLogsPath().resolve("telemetry.csv");
+        assertTrue(Files.exists(csvPath));
+        assertEquals("timestamp,node,metric,value", Files.readAllLines(csvPath).get(0));
+        final Path jsonPath = runner.getRunnerLogsPath().resolve("telemetry.json");
+        assertTrue(Files.exists(jsonPath));
+        try (XContentParser parser = JsonXContent.jsonXContent.createParser(NamedXContentRegistry.EMPTY,
+                LoggingDeprecationHandler.INSTANCE, Files.readString(jsonPath))) {
+            final List<Object> jsonSamples = parser.list();
+            assertFalse(jsonSamples.isEmpty());
+            assertTrue(jsonSamples.stream().anyMatch(sample -> "Node 1".equals(((Map<?, ?>) sample).get("node"))));
+        }
+    }
+
+    public void test_flightRecorder() throws Exception {
+        final String index = "test_jfr";
+        runner.startFlightRecorder("default");
+        try {
+            runner.createIndex(index, (Settings) null);
+            runner.ensureYellow(index);
+            runner.insert(index, "1", "{\"msg\":\"test 1\"}");
+            // waitForRelocation() has no expected status
+            runner.refresh();
+            assertEquals(1, runner.count(index).getHits().getTotalHits().value);
+        } finally {
+            runner.stopFlightRecorder();
+        }
+        final Path recordingPath;
+        try (Stream<Path> stream = Files.list(runner.getRunnerLogsPath())) {
+            recordingPath = stream.filter(p -> p.getFileName().toString().endsWith(".jfr")).findFirst().orElse(null);
+        }
+        assertNotNull(recordingPath);
+        final List<RecordedEvent> events = RecordingFile.readAllEvents(recordingPath).stream()
+                .filter(e -> "org.codelibs.elasticsearch.runner.RunnerCall".equals(e.getEventType().getName())).toList();
+        // one event per outermost helper call
+        assertEquals(1, events.stream().filter(e -> "createIndex".equals(e.getString("method"))).count());
+        assertTrue(events.stream().anyMatch(e -> "insert".equals(e.getString("method")) && index.equals(e.getString("indices"))));
+    }
 }
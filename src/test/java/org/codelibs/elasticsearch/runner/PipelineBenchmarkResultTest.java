@@ -0,0 +1,52 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner;
+
+import java.util.List;
+
+import org.codelibs.elasticsearch.runner.PipelineBenchmarkResult.ProcessorStats;
+
+import junit.framework.TestCase;
+
+public class PipelineBenchmarkResultTest extends TestCase {
+
+    public void test_diff() throws Exception {
+        final List<ProcessorStats> before = List.of(new ProcessorStats(0, "grok", "grok", 10, 50, 1));
+        final List<ProcessorStats> after =
+                List.of(new ProcessorStats(0, "grok", "grok", 110, 250, 3), new ProcessorStats(1, "date", "date", 100, 20, 0));
+
+        final List<ProcessorStats> diff = PipelineBenchmarkResult.diff(before, after);
+        assertEquals(2, diff.size());
+        assertEquals(100, diff.get(0).getCount());
+        assertEquals(200, diff.get(0).getTimeMillis());
+        assertEquals(2, diff.get(0).getFailed());
+        // a processor added after the first capture
+        assertEquals(100, diff.get(1).getCount());
+        assertEquals(20, diff.get(1).getTimeMillis());
+    }
+
+    public void test_bottleneck() throws Exception {
+        final PipelineBenchmarkResult result = new PipelineBenchmarkResult("logs", 1000, 500,
+                List.of(new ProcessorStats(0, "grok", "grok", 1000, 300, 0), new ProcessorStats(1, "date", "date", 1000, 50, 0)));
+        assertEquals(2000, result.getDocsPerSecond());
+        assertEquals("grok", result.getBottleneck().getName());
+        assertTrue(result.toString().contains("[0] grok(grok)"));
+
+        assertNull(new PipelineBenchmarkResult("logs", 0, 0, List.of()).getBottleneck());
+        assertEquals(0, new PipelineBenchmarkResult("logs", 0, 0, List.of()).getDocsPerSecond());
+    }
+}
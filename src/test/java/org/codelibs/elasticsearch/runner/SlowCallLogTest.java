@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class SlowCallLogTest extends TestCase {
+
+    public void test_nestedCalls() throws Exception {
+        final SlowCallLog slowCallLog = new SlowCallLog(0, 10, true);
+        try (SlowCallLog.Call call = slowCallLog.start("reset", null, "Node 1")) {
+            try (SlowCallLog.Call nested = slowCallLog.start("wipeIndices", null, "Node 1")) {
+                nested.source(() -> "nested");
+            }
+            call.source(() -> "outer");
+        }
+        try (SlowCallLog.Call call = slowCallLog.start("search", "test_index", "Node 2")) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(2, slowCallLog.getCount());
+        final List<SlowCallLog.SlowCall> calls = slowCallLog.getSlowestCalls();
+        assertEquals(2, calls.size());
+        assertEquals("search", calls.get(0).getMethod());
+        assertEquals("test_index", calls.get(0).getIndex());
+        assertEquals("Node 2", calls.get(0).getNodeName());
+        assertEquals("reset", calls.get(1).getMethod());
+        assertEquals("outer", calls.get(1).getSource());
+    }
+
+    public void test_threshold() throws Exception {
+        final SlowCallLog slowCallLog = new SlowCallLog(60000, 10, false);
+        try (SlowCallLog.Call call = slowCallLog.start("search", "test_index", "Node 1")) {
+            call.source(() -> "ignored");
+        }
+        assertEquals(0, slowCallLog.getCount());
+        assertTrue(slowCallLog.getSlowestCalls().isEmpty());
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner.bench;
+
+import java.util.Locale;
+
+import junit.framework.TestCase;
+
+public class BenchmarkResultTest extends TestCase {
+
+    public void test_of() {
+        final long[] latencies = new long[100];
+        for (int i = 0; i < latencies.length; i++) {
+            // 100ms, 99ms, ..., 1ms in descending order
+            latencies[i] = (latencies.length - i) * 1000000L;
+        }
+        final BenchmarkResult result = BenchmarkResult.of("test", latencies);
+        assertEquals("test", result.getName());
+        assertEquals(100, result.getIterations());
+        assertEquals(50.5, result.getMeanMillis(), 0.0001);
+        assertEquals(50.0, result.getP50Millis(), 0.0001);
+        assertEquals(90.0, result.getP90Millis(), 0.0001);
+        assertEquals(99.0, result.getP99Millis(), 0.0001);
+        assertEquals(100.0, result.getMaxMillis(), 0.0001);
+        assertEquals(100000000L, latencies[0]);
+
+        final BenchmarkResult single = BenchmarkResult.of("single", new long[] { 3000000L });
+        assertEquals(3.0, single.getP50Millis(), 0.0001);
+        assertEquals(3.0, single.getP99Millis(), 0.0001);
+
+        final BenchmarkResult empty = BenchmarkResult.of("empty", new long[0]);
+        assertEquals(0, empty.getIterations());
+        assertEquals(0.0, empty.getMaxMillis(), 0.0001);
+    }
+
+    public void test_toString() {
+        final Locale locale = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.GERMANY);
+            final String value = new BenchmarkResult("test", 10, 1.5, 1.25, 2, 3, 4).toString();
+            assertTrue(value, value.contains("mean=1.500ms p50=1.250ms p90=2.000ms"));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+}
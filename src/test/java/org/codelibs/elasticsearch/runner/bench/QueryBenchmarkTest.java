@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner;
+
+import junit.framework.TestCase;
+
+public class QueryBenchmarkTest extends TestCase {
+
+    private Path resultPath;
+
+    @Override
+    protected void setUp() throws Exception {
+        resultPath = Files.createTempDirectory("query_benchmark");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try (Stream<Path> stream = Files.list(resultPath)) {
+            for (final Path path : (Iterable<Path>) stream::iterator) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(resultPath);
+    }
+
+    public void test_findPrevious() throws Exception {
+        assertFalse(QueryBenchmark.findPrevious(resultPath, "8.14.1").isPresent());
+
+        final Path older = writeResult("8.13.0_1000.json", "8.13.0", 2.0);
+        final Path newer = writeResult("8.12.0_2000.json", "8.12.0", 1.0);
+        writeResult("8.14.1_3000.json", "8.14.1", 1.0);
+        writeResult("notes.json", "8.11.0", 1.0);
+        // the modification time is not used to order results
+        Files.setLastModifiedTime(older, FileTime.fromMillis(System.currentTimeMillis() + 60000));
+
+        final Optional<Path> previous = QueryBenchmark.findPrevious(resultPath, "8.14.1");
+        assertTrue(previous.isPresent());
+        assertEquals(newer, previous.get());
+    }
+
+    public void test_compare() throws Exception {
+        final Path previous = writeResult("8.13.0_1000.json", "8.13.0", 2.0);
+        final QueryBenchmark benchmark = new QueryBenchmark(new ElasticsearchClusterRunner());
+        final Map<String, Double> changes = benchmark.compare(List.of(new BenchmarkResult("term", 10, 3, 3.0, 3, 3, 3),
+                new BenchmarkResult("match", 10, 1, 1.0, 1, 1, 1), new BenchmarkResult("unknown", 10, 1, 1.0, 1, 1, 1)), previous);
+        assertEquals(2, changes.size());
+        assertEquals(0.5, changes.get("term"), 0.0001);
+        assertEquals(-0.5, changes.get("match"), 0.0001);
+        assertFalse(changes.containsKey("unknown"));
+    }
+
+    private Path writeResult(final String fileName, final String version, final double p50) throws Exception {
+        final Path path = resultPath.resolve(fileName);
+        Files.writeString(path, "{\"version\":\"" + version + "\",\"results\":{\"term\":{\"p50\":" + p50 + "},\"match\":{\"p50\":" + p50
+                + "}}}", StandardCharsets.UTF_8);
+        return path;
+    }
+}
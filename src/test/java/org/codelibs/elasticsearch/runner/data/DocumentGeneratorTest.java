@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012-2022 CodeLibs Project and the Others.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.codelibs.elasticsearch.runner.data;
+
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.common.xcontent.LoggingDeprecationHandler;
+import org.elasticsearch.xcontent.NamedXContentRegistry;
+import org.elasticsearch.xcontent.XContentParser;
+import org.elasticsearch.xcontent.json.JsonXContent;
+
+import junit.framework.TestCase;
+
+public class DocumentGeneratorTest extends TestCase {
+
+    private static final Map<String, Object> MAPPING = Map.of("properties", Map.of(//
+            "id", Map.of("type", "keyword"), //
+            "msg", Map.of("type", "text"), //
+            "order", Map.of("type", "long"), //
+            "price", Map.of("type", "double"), //
+            "@timestamp", Map.of("type", "date"), //
+            "location", Map.of("type", "geo_point"), //
+            "comments", Map.of("type", "nested", "properties", Map.of("author", Map.of("type", "keyword"))), //
+            "join_field", Map.of("type", "join"), //
+            "status", Map.of("type", "constant_keyword", "value", "active"), //
+            "kind", Map.of("type", "constant_keyword")));
+
+    public void test_generate() throws Exception {
+        final DocumentGenerator generator = new DocumentGenerator(MAPPING, 1L);
+        final String doc1 = generator.generate(1);
+        assertEquals(doc1, generator.generate(1));
+        assertEquals(doc1, new DocumentGenerator(MAPPING, 1L).generate(1));
+        assertFalse(doc1.equals(generator.generate(2)));
+        assertFalse(doc1.equals(new DocumentGenerator(MAPPING, 2L).generate(1)));
+
+        final Map<String, Object> source = parse(doc1);
+        assertTrue(source.get("id").toString().startsWith("id_"));
+        assertTrue(source.get("msg") instanceof String);
+        assertTrue(source.get("order") instanceof Number);
+        assertTrue(source.get("price") instanceof Number);
+        assertTrue(source.get("@timestamp") instanceof Number);
+        assertTrue(source.get("location") instanceof Map);
+        assertTrue(source.get("comments") instanceof List);
+        assertFalse(source.containsKey("join_field"));
+        assertEquals("active", source.get("status"));
+        assertEquals("active", parse(generator.generate(2)).get("status"));
+        assertFalse(source.containsKey("kind"));
+    }
+
+    public void test_generateBulkItem() throws Exception {
+        final DocumentGenerator generator = new DocumentGenerator(MAPPING, 1L);
+        final StringBuilder buf = new StringBuilder();
+        generator.generateBulkItem(10, new DocumentRandom(0), buf);
+        final String[] lines = buf.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("{\"index\":{\"_id\":\"10\"}}", lines[0]);
+        assertEquals(generator.generate(10), lines[1]);
+    }
+
+    public void test_appendString() throws Exception {
+        final StringBuilder buf = new StringBuilder();
+        DocumentGenerator.appendString(buf, "a\"b\\c\n\u001f");
+        assertEquals("\"a\\\"b\\\\c\\u000a\\u001f\"", buf.toString());
+        assertEquals("a\"b\\c\n\u001f", parse("{\"v\":" + buf + "}").get("v"));
+    }
+
+    private static Map<String, Object> parse(final String json) throws Exception {
+        try (XContentParser parser =
+                JsonXContent.jsonXContent.createParser(NamedXContentRegistry.EMPTY, LoggingDeprecationHandler.INSTANCE, json)) {
+            return parser.map();
+        }
+    }
+}